@@ -0,0 +1,61 @@
+package com.gocomet.ridehailing.common.geo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One origin to N candidates within 5 km: Haversine per pair, the scalar
+ * equirectangular fast path, and the auto-vectorised batch kernel.
+ *
+ * ./gradlew jmh -PjmhIncludes=GeoDistanceBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeoDistanceBenchmark {
+
+    @Param({"16", "256", "4096"})
+    private int candidates;
+
+    private final double originLat = 12.9716;
+    private final double originLng = 77.5946;
+    private double[] lats;
+    private double[] lngs;
+    private double[] out;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        lats = new double[candidates];
+        lngs = new double[candidates];
+        out = new double[candidates];
+        for (int i = 0; i < candidates; i++) {
+            lats[i] = originLat + (random.nextDouble() - 0.5) * 0.09;
+            lngs[i] = originLng + (random.nextDouble() - 0.5) * 0.09;
+        }
+    }
+
+    @Benchmark
+    public double[] haversine() {
+        for (int i = 0; i < candidates; i++) {
+            out[i] = GeoDistance.haversineKm(originLat, originLng, lats[i], lngs[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] fastPathScalar() {
+        for (int i = 0; i < candidates; i++) {
+            out[i] = GeoDistance.distanceKm(originLat, originLng, lats[i], lngs[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] batch() {
+        GeoDistance.batchKm(originLat, originLng, lats, lngs, out, candidates);
+        return out;
+    }
+}
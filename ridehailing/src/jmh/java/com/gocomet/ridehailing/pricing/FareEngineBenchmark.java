@@ -0,0 +1,99 @@
+package com.gocomet.ridehailing.pricing;
+
+import com.gocomet.ridehailing.driver.model.VehicleType;
+import com.gocomet.ridehailing.pricing.service.FareEngine;
+import com.gocomet.ridehailing.pricing.service.PricingTable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FareEngine (long paise, one Haversine) vs the previous BigDecimal path,
+ * where ending a trip ran Haversine + BigDecimal fare three times.
+ *
+ * ./gradlew jmh -PjmhIncludes=FareEngineBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FareEngineBenchmark {
+
+    private static final int TRIPS = 1024;
+    private static final BigDecimal SEDAN_PER_KM = new BigDecimal("12.00");
+    private static final BigDecimal MINIMUM_FARE = new BigDecimal("30.00");
+
+    // Built-in default rates — same as the legacy constants
+    private final FareEngine fareEngine = new FareEngine(new PricingTable());
+
+    private double[] startLat = new double[TRIPS];
+    private double[] startLng = new double[TRIPS];
+    private double[] endLat = new double[TRIPS];
+    private double[] endLng = new double[TRIPS];
+    private BigDecimal[] surge = new BigDecimal[TRIPS];
+    private int next;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < TRIPS; i++) {
+            startLat[i] = 12.85 + random.nextDouble() * 0.25;
+            startLng[i] = 77.45 + random.nextDouble() * 0.30;
+            endLat[i] = 12.85 + random.nextDouble() * 0.25;
+            endLng[i] = 77.45 + random.nextDouble() * 0.30;
+            surge[i] = BigDecimal.valueOf(10 + random.nextInt(11), 1);
+        }
+    }
+
+    @Benchmark
+    public void endTripBigDecimal(Blackhole bh) {
+        int i = next++ & (TRIPS - 1);
+        double distance = legacyDistance(startLat[i], startLng[i], endLat[i], endLng[i]);
+        bh.consume(BigDecimal.valueOf(distance).setScale(2, RoundingMode.HALF_UP));
+        bh.consume(legacyFare(startLat[i], startLng[i], endLat[i], endLng[i], surge[i]));
+        bh.consume(legacyFare(startLat[i], startLng[i], endLat[i], endLng[i], BigDecimal.ONE));
+    }
+
+    @Benchmark
+    public void endTripFareEngine(Blackhole bh) {
+        int i = next++ & (TRIPS - 1);
+        bh.consume(fareEngine.compute(startLat[i], startLng[i], endLat[i], endLng[i],
+                VehicleType.SEDAN, FareEngine.surgeBasisPoints(surge[i])));
+    }
+
+    @Benchmark
+    public BigDecimal estimateBigDecimal() {
+        int i = next++ & (TRIPS - 1);
+        return legacyFare(startLat[i], startLng[i], endLat[i], endLng[i], surge[i]);
+    }
+
+    @Benchmark
+    public long estimateFareEngine() {
+        int i = next++ & (TRIPS - 1);
+        return fareEngine.totalFarePaise(startLat[i], startLng[i], endLat[i], endLng[i],
+                VehicleType.SEDAN, FareEngine.surgeBasisPoints(surge[i]));
+    }
+
+    // Previous SurgePricingService.estimateFare / calculateDistance, verbatim
+    private static BigDecimal legacyFare(double lat1, double lng1, double lat2, double lng2, BigDecimal surge) {
+        double distanceKm = legacyDistance(lat1, lng1, lat2, lng2);
+        BigDecimal fare = SEDAN_PER_KM
+                .multiply(BigDecimal.valueOf(distanceKm))
+                .multiply(surge);
+        return fare.compareTo(MINIMUM_FARE) < 0 ? MINIMUM_FARE : fare.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static double legacyDistance(double lat1, double lng1, double lat2, double lng2) {
+        final double R = 6371;
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return R * c;
+    }
+}
@@ -1,21 +1,74 @@
 package com.gocomet.ridehailing.common.config;
 
+import com.gocomet.ridehailing.notification.service.RedisWebSocketPublisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+/**
+ * STOMP over WebSocket. app.websocket.broker picks where /topic lives:
+ *
+ * - simple: in-memory broker — a client only gets messages sent on the
+ *   node it is connected to (single instance)
+ * - relay: external STOMP broker (RabbitMQ with the STOMP plugin) — every
+ *   node relays subscriptions and sends to it, so any node reaches any client
+ * - redis: in-memory broker per node, bridged over Redis pub/sub by
+ *   RedisWebSocketPublisher — multi-node without running another broker
+ *
+ * Destinations below /topic are dot-separated (/topic/rider.{id}): RabbitMQ
+ * maps the part after /topic/ to a routing key and rejects further slashes,
+ * so every mode uses the same names and clients don't depend on the mode.
+ */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Value("${app.websocket.broker:simple}")
+    private String broker;
+
+    @Value("${app.websocket.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${app.websocket.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${app.websocket.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${app.websocket.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${app.websocket.relay.virtual-host:/}")
+    private String relayVirtualHost;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Clients subscribe to /topic/* for broadcast updates
-        config.enableSimpleBroker("/topic");
+        // Clients subscribe to /topic/{name}.{id} for broadcast updates
+        switch (broker) {
+            case "relay" -> config.enableStompBrokerRelay("/topic")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setVirtualHost(relayVirtualHost);
+            case "simple", "redis" -> config.enableSimpleBroker("/topic");
+            default -> throw new IllegalArgumentException(
+                    "app.websocket.broker must be simple, relay or redis, was: " + broker);
+        }
         // Client messages prefixed with /app go to @MessageMapping methods
         config.setApplicationDestinationPrefixes("/app");
+        config.setPathMatcher(new AntPathMatcher("."));
     }
 
     @Override
@@ -25,4 +78,14 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOriginPatterns("*")  // Allow React dev server
                 .withSockJS();  // Fallback for browsers without WebSocket
     }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.websocket.broker", havingValue = "redis")
+    public RedisMessageListenerContainer webSocketBridgeListener(RedisConnectionFactory connectionFactory,
+                                                                 RedisWebSocketPublisher publisher) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(publisher, new ChannelTopic(publisher.getChannel()));
+        return container;
+    }
 }
@@ -16,9 +16,10 @@ import java.util.UUID;
  * guaranteeing ordered processing by consumers.
  *
  * Event flow:
- * REQUESTED → DRIVER_ASSIGNED → DRIVER_EN_ROUTE → DRIVER_ARRIVED
+ * REQUESTED → DRIVER_OFFERED → DRIVER_ASSIGNED → DRIVER_EN_ROUTE → DRIVER_ARRIVED
  * → TRIP_STARTED → TRIP_COMPLETED → PAYMENT_COMPLETED
  * (from any state) → CANCELLED | NO_DRIVERS
+ * (stuck before acceptance) → EXPIRED
  */
 @Data
 @Builder
@@ -29,13 +30,16 @@ public class RideEvent {
     private String eventId;
     private UUID rideId;
     private UUID riderId;
-    private UUID driverId; // null for REQUESTED / NO_DRIVERS events
+    private UUID driverId; // null for REQUESTED / CANCELLED / NO_DRIVERS events; EXPIRED carries the offered driver, if any
     private EventType eventType;
     private Instant timestamp;
     private String metadata; // Extra JSON: fare details, cancellation reason, etc.
+    private Double pickupLat; // REQUESTED only — feeds per-cell demand forecasting
+    private Double pickupLng;
 
     public enum EventType {
         REQUESTED,
+        DRIVER_OFFERED,
         DRIVER_ASSIGNED,
         DRIVER_EN_ROUTE,
         DRIVER_ARRIVED,
@@ -43,18 +47,32 @@ public class RideEvent {
         TRIP_COMPLETED,
         PAYMENT_COMPLETED,
         CANCELLED,
-        NO_DRIVERS
+        NO_DRIVERS,
+        EXPIRED
     }
 
     // ── Factory helpers ────────────────────────────────────────────────────
 
-    public static RideEvent requested(UUID rideId, UUID riderId) {
+    public static RideEvent requested(UUID rideId, UUID riderId, double pickupLat, double pickupLng) {
         return RideEvent.builder()
                 .eventId(UUID.randomUUID().toString())
                 .rideId(rideId)
                 .riderId(riderId)
                 .eventType(EventType.REQUESTED)
                 .timestamp(Instant.now())
+                .pickupLat(pickupLat)
+                .pickupLng(pickupLng)
+                .build();
+    }
+
+    public static RideEvent driverOffered(UUID rideId, UUID riderId, UUID driverId) {
+        return RideEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .rideId(rideId)
+                .riderId(riderId)
+                .driverId(driverId)
+                .eventType(EventType.DRIVER_OFFERED)
+                .timestamp(Instant.now())
                 .build();
     }
 
@@ -112,4 +130,15 @@ public class RideEvent {
                 .timestamp(Instant.now())
                 .build();
     }
+
+    public static RideEvent expired(UUID rideId, UUID riderId, UUID driverId) {
+        return RideEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .rideId(rideId)
+                .riderId(riderId)
+                .driverId(driverId)
+                .eventType(EventType.EXPIRED)
+                .timestamp(Instant.now())
+                .build();
+    }
 }
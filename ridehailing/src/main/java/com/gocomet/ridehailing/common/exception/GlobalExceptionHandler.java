@@ -1,5 +1,7 @@
 package com.gocomet.ridehailing.common.exception;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -7,13 +9,26 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 @RestControllerAdvice
+@Slf4j
 public class GlobalExceptionHandler {
 
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    // Unique indexes concurrent requests race on — the loser may simply retry
+    private static final Set<String> RACE_INDEXES = Set.of(
+            "idx_ride_transitions_ride_seq",
+            "idx_rides_idempotency",
+            "idx_payments_idempotency",
+            "idx_trips_ride_id",
+            "idx_assignments_ride_driver");
+
     @ExceptionHandler(ResourceNotFoundException.class)
     public ResponseEntity<Map<String, Object>> handleResourceNotFound(ResourceNotFoundException ex) {
         return buildErrorResponse(HttpStatus.NOT_FOUND, ex.getMessage());
@@ -29,6 +44,17 @@ public class GlobalExceptionHandler {
         return buildErrorResponse(HttpStatus.CONFLICT, ex.getMessage());
     }
 
+    // Unique-index races (a concurrent ride transition, a duplicate idempotency key) are 409;
+    // NOT NULL, FK and CHECK violations and other unique indexes are bugs, not races — 500
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<Map<String, Object>> handleDataIntegrityViolation(DataIntegrityViolationException ex) {
+        if (isRace(ex)) {
+            return buildErrorResponse(HttpStatus.CONFLICT, "Conflicting concurrent update — please retry");
+        }
+        log.error("Data integrity violation", ex);
+        return handleGenericException(ex);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<Map<String, Object>> handleIllegalArgument(IllegalArgumentException ex) {
         return buildErrorResponse(HttpStatus.BAD_REQUEST, ex.getMessage());
@@ -54,6 +80,19 @@ public class GlobalExceptionHandler {
         return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "An unexpected error occurred: " + ex.getMessage());
     }
 
+    // Postgres reports: duplicate key value violates unique constraint "<index>"
+    private static boolean isRace(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql && sql.getSQLState() != null) {
+                if (!UNIQUE_VIOLATION.equals(sql.getSQLState()) || sql.getMessage() == null) {
+                    return false;
+                }
+                return RACE_INDEXES.stream().anyMatch(index -> sql.getMessage().contains("\"" + index + "\""));
+            }
+        }
+        return false;
+    }
+
     private ResponseEntity<Map<String, Object>> buildErrorResponse(HttpStatus status, String message) {
         Map<String, Object> body = new HashMap<>();
         body.put("timestamp", LocalDateTime.now());
@@ -0,0 +1,213 @@
+package com.gocomet.ridehailing.common.geo;
+
+/**
+ * Hierarchical geo cell packed into a primitive long.
+ *
+ * The world is projected with Web Mercator (conformal, so cells are square on
+ * the ground at any latitude) and split into a 2^level × 2^level grid —
+ * the same tiling as slippy-map tiles. Level 15 is ~1.2km at Bangalore's
+ * latitude; each level up doubles the edge length.
+ *
+ * Bit layout: [58..62] level | [29..57] x (west → east) | [0..28] y (north → south)
+ *
+ * All operations are O(1) arithmetic on the long — no strings, no objects.
+ * Tokens (lower-case hex) are only for Redis keys and JSON.
+ */
+public final class CellId {
+
+    public static final int MAX_LEVEL = 29;
+
+    /** Returned by neighbour lookups that fall off the top or bottom of the map. */
+    public static final long NONE = -1L;
+
+    private static final int COORD_BITS = 29;
+    private static final long COORD_MASK = (1L << COORD_BITS) - 1;
+    private static final int LEVEL_SHIFT = 2 * COORD_BITS;
+    private static final double MAX_LAT = 85.05112878;
+    private static final double EARTH_CIRCUMFERENCE_KM = 40075.016686;
+
+    private CellId() {
+    }
+
+    // ── Construction ──────────────────────────────────────────────────────
+
+    /**
+     * Cell containing the point at the given level.
+     * Longitudes wrap; latitudes beyond ±85.05° clamp to the edge row.
+     */
+    public static long of(double lat, double lng, int level) {
+        checkLevel(level);
+        long size = 1L << level;
+
+        double wrappedLng = lng - 360.0 * Math.floor((lng + 180.0) / 360.0);
+        long x = (long) Math.floor((wrappedLng + 180.0) / 360.0 * size);
+
+        double clampedLat = Math.max(-MAX_LAT, Math.min(MAX_LAT, lat));
+        double sinLat = Math.sin(Math.toRadians(clampedLat));
+        double mercatorY = 0.5 - Math.log((1 + sinLat) / (1 - sinLat)) / (4 * Math.PI);
+        long y = (long) Math.floor(mercatorY * size);
+
+        return pack(level, clamp(x, size), clamp(y, size));
+    }
+
+    public static long fromXY(int level, int x, int y) {
+        checkLevel(level);
+        long size = 1L << level;
+        if (x < 0 || x >= size || y < 0 || y >= size) {
+            throw new IllegalArgumentException("Cell coordinates out of range for level " + level);
+        }
+        return pack(level, x, y);
+    }
+
+    // ── Accessors ─────────────────────────────────────────────────────────
+
+    public static int level(long cell) {
+        return (int) (cell >>> LEVEL_SHIFT);
+    }
+
+    public static int x(long cell) {
+        return (int) ((cell >>> COORD_BITS) & COORD_MASK);
+    }
+
+    public static int y(long cell) {
+        return (int) (cell & COORD_MASK);
+    }
+
+    public static boolean isValid(long cell) {
+        if (cell < 0) {
+            return false;
+        }
+        int level = level(cell);
+        long size = 1L << Math.min(level, MAX_LEVEL);
+        return level <= MAX_LEVEL && x(cell) < size && y(cell) < size;
+    }
+
+    public static double centerLat(long cell) {
+        double n = Math.PI - 2 * Math.PI * (y(cell) + 0.5) / (1L << level(cell));
+        return Math.toDegrees(Math.atan(Math.sinh(n)));
+    }
+
+    public static double centerLng(long cell) {
+        return (x(cell) + 0.5) / (1L << level(cell)) * 360.0 - 180.0;
+    }
+
+    /**
+     * Edge length of the cell in km, measured at its centre latitude.
+     */
+    public static double edgeKm(long cell) {
+        return EARTH_CIRCUMFERENCE_KM * Math.cos(Math.toRadians(centerLat(cell))) / (1L << level(cell));
+    }
+
+    // ── Hierarchy ─────────────────────────────────────────────────────────
+
+    public static long parent(long cell) {
+        int level = level(cell);
+        if (level == 0) {
+            throw new IllegalArgumentException("Level 0 cell has no parent");
+        }
+        return pack(level - 1, x(cell) >>> 1, y(cell) >>> 1);
+    }
+
+    /**
+     * Ancestor at a coarser level (level must be ≤ the cell's own level).
+     */
+    public static long parent(long cell, int level) {
+        int own = level(cell);
+        if (level < 0 || level > own) {
+            throw new IllegalArgumentException("Parent level " + level + " is not above cell level " + own);
+        }
+        int shift = own - level;
+        return pack(level, x(cell) >>> shift, y(cell) >>> shift);
+    }
+
+    /**
+     * One of the four children: 0 = NW, 1 = NE, 2 = SW, 3 = SE.
+     */
+    public static long child(long cell, int position) {
+        int level = level(cell);
+        if (level == MAX_LEVEL) {
+            throw new IllegalArgumentException("Cell is already at max level");
+        }
+        if (position < 0 || position > 3) {
+            throw new IllegalArgumentException("Child position must be 0..3");
+        }
+        return pack(level + 1, (x(cell) << 1) | (position & 1), (y(cell) << 1) | (position >>> 1));
+    }
+
+    // ── Neighbours ────────────────────────────────────────────────────────
+
+    /**
+     * Cell offset by (dx, dy) at the same level. Wraps east–west across the
+     * antimeridian; returns NONE past the top or bottom edge.
+     */
+    public static long neighbour(long cell, int dx, int dy) {
+        int level = level(cell);
+        long size = 1L << level;
+        long y = y(cell) + (long) dy;
+        if (y < 0 || y >= size) {
+            return NONE;
+        }
+        long x = Math.floorMod(x(cell) + (long) dx, size);
+        return pack(level, x, y);
+    }
+
+    /**
+     * Write the (up to) 8 surrounding cells into {@code out} and return how many
+     * were written. {@code out} must have room for 8.
+     */
+    public static int neighbours(long cell, long[] out) {
+        int count = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if (dx == 0 && dy == 0) {
+                    continue;
+                }
+                long neighbour = neighbour(cell, dx, dy);
+                if (neighbour != NONE && neighbour != cell && !contains(out, count, neighbour)) {
+                    out[count++] = neighbour;
+                }
+            }
+        }
+        return count;
+    }
+
+    // ── Tokens ────────────────────────────────────────────────────────────
+
+    public static String toToken(long cell) {
+        return Long.toHexString(cell);
+    }
+
+    public static long fromToken(String token) {
+        long cell = Long.parseUnsignedLong(token, 16);
+        if (!isValid(cell)) {
+            throw new IllegalArgumentException("Invalid cell token: " + token);
+        }
+        return cell;
+    }
+
+    // ── Internals ─────────────────────────────────────────────────────────
+
+    private static long pack(int level, long x, long y) {
+        return ((long) level << LEVEL_SHIFT) | (x << COORD_BITS) | y;
+    }
+
+    private static long clamp(long value, long size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+
+    private static void checkLevel(int level) {
+        if (level < 0 || level > MAX_LEVEL) {
+            throw new IllegalArgumentException("Cell level must be 0.." + MAX_LEVEL + ", got " + level);
+        }
+    }
+
+    // Tiny levels wrap onto themselves (e.g. level 1 has only two columns)
+    private static boolean contains(long[] cells, int count, long cell) {
+        for (int i = 0; i < count; i++) {
+            if (cells[i] == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
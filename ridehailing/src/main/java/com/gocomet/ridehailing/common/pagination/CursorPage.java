@@ -0,0 +1,31 @@
+package com.gocomet.ridehailing.common.pagination;
+
+import lombok.*;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CursorPage<T> {
+
+    private List<T> items;
+
+    // Pass as ?cursor= for the next page; null on the last page
+    private String nextCursor;
+
+    /**
+     * Build a page from a query that fetched one row more than the page size:
+     * the extra row only signals that another page exists.
+     */
+    public static <T> CursorPage<T> of(List<T> fetched, int pageSize, Function<T, Cursor> position) {
+        if (fetched.size() <= pageSize) {
+            return new CursorPage<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, pageSize);
+        return new CursorPage<>(items, position.apply(items.get(pageSize - 1)).encode());
+    }
+}
@@ -1,13 +1,18 @@
 package com.gocomet.ridehailing.driver.controller;
 
+import com.gocomet.ridehailing.common.pagination.CursorPage;
 import com.gocomet.ridehailing.driver.dto.DriverResponse;
 import com.gocomet.ridehailing.driver.dto.LocationUpdateRequest;
 import com.gocomet.ridehailing.driver.service.DriverService;
 import com.gocomet.ridehailing.notification.service.NotificationService;
 import com.gocomet.ridehailing.ride.service.MatchingService;
+import com.gocomet.ridehailing.ride.service.OfferInboxService;
 import com.gocomet.ridehailing.ride.service.RideService;
+import com.gocomet.ridehailing.trip.dto.TripHistoryItem;
+import com.gocomet.ridehailing.trip.service.TripService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -24,6 +29,9 @@ public class DriverController {
     private final RideService rideService;
     private final MatchingService matchingService;
     private final NotificationService notificationService;
+    private final TripService tripService;
+
+    private static final String OFFER_INBOX_VERSION_HEADER = "X-Offer-Inbox-Version";
 
     /**
      * GET /v1/drivers — List all drivers (for demo/frontend selection)
@@ -35,10 +43,27 @@ public class DriverController {
 
     /**
      * GET /v1/drivers/{id}/pending-offers — Get pending ride offers for driver
+     * Read from the driver's Redis offer inbox; X-Offer-Inbox-Version carries its version.
      */
     @GetMapping("/{id}/pending-offers")
-    public ResponseEntity<?> getPendingOffers(@PathVariable UUID id) {
-        return ResponseEntity.ok(rideService.getPendingOffersForDriver(id));
+    public ResponseEntity<String> getPendingOffers(@PathVariable UUID id) {
+        OfferInboxService.Inbox inbox = rideService.getPendingOffersForDriver(id);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(OFFER_INBOX_VERSION_HEADER, String.valueOf(inbox.version()))
+                .body(inbox.offersJson());
+    }
+
+    /**
+     * GET /v1/drivers/{id}/trips — Trip history, newest first (keyset paginated)
+     */
+    @GetMapping("/{id}/trips")
+    public ResponseEntity<CursorPage<TripHistoryItem>> getTripHistory(
+            @PathVariable UUID id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+
+        return ResponseEntity.ok(tripService.getTripHistory(id, cursor, limit));
     }
 
     /**
@@ -7,6 +7,8 @@ import com.gocomet.ridehailing.driver.event.DriverLocationProducer;
 import com.gocomet.ridehailing.driver.model.Driver;
 import com.gocomet.ridehailing.driver.model.DriverStatus;
 import com.gocomet.ridehailing.driver.repository.DriverRepository;
+import com.gocomet.ridehailing.trip.service.TripOdometer;
+import com.gocomet.ridehailing.trip.service.TripTracker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -23,6 +25,8 @@ public class DriverService {
     private final DriverRepository driverRepository;
     private final LocationService locationService;
     private final DriverLocationProducer driverLocationProducer;
+    private final TripOdometer tripOdometer;
+    private final TripTracker tripTracker;
 
     /**
      * Process a location update from a driver.
@@ -46,6 +50,12 @@ public class DriverService {
                     driver.getVehicleType().name());
         }
 
+        // On a trip, the ping advances that trip's odometer and is streamed to the rider
+        if (driver.getStatus() == DriverStatus.ON_TRIP) {
+            tripOdometer.onLocation(driverId, request.getLatitude(), request.getLongitude());
+            tripTracker.onLocation(driverId, request.getLatitude(), request.getLongitude());
+        }
+
         driverRepository.save(driver);
 
         // Publish location update to Kafka
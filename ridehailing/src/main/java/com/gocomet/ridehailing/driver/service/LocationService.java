@@ -4,11 +4,18 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.geo.*;
 import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.domain.geo.GeoReference;
+import org.springframework.data.redis.domain.geo.GeoShape;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -24,6 +31,17 @@ public class LocationService {
     private static final String DRIVER_LOCK_PREFIX = "driver:lock:";
     private static final int AVAILABILITY_TTL_SECONDS = 30;
 
+    // KEYS[i] = key, ARGV[i] = expected value; deletes each key still holding its value
+    private static final RedisScript<Long> COMPARE_AND_DELETE_SCRIPT = new DefaultRedisScript<>("""
+            local released = 0
+            for i = 1, #KEYS do
+                if redis.call('GET', KEYS[i]) == ARGV[i] then
+                    released = released + redis.call('DEL', KEYS[i])
+                end
+            end
+            return released
+            """, Long.class);
+
     /**
      * Update driver's location in Redis GEO index.
      * Also refreshes their availability TTL — if a driver stops sending
@@ -104,6 +122,35 @@ public class LocationService {
         log.debug("Unlocked driver {}", driverId);
     }
 
+    /**
+     * Release many driver locks in one round trip (driverId → rideId). A lock
+     * is only deleted while it still holds that ride, so a driver who has
+     * since been locked for another ride keeps the new lock. Returns the
+     * number of locks released.
+     */
+    public long releaseLocks(Map<UUID, UUID> rideByDriver) {
+        if (rideByDriver.isEmpty()) {
+            return 0;
+        }
+        List<String> keys = new ArrayList<>(rideByDriver.size());
+        String[] rideIds = new String[rideByDriver.size()];
+        for (Map.Entry<UUID, UUID> entry : rideByDriver.entrySet()) {
+            rideIds[keys.size()] = entry.getValue().toString();
+            keys.add(DRIVER_LOCK_PREFIX + entry.getKey());
+        }
+        return compareAndDelete(keys, rideIds);
+    }
+
+    /**
+     * Delete each key only while it still holds its expected value (keys[i]
+     * against values[i]), in one round trip. Returns the number deleted.
+     * Also releases the riders' active-ride markers (RideGuardService).
+     */
+    public long compareAndDelete(List<String> keys, String[] values) {
+        Long deleted = redisTemplate.execute(COMPARE_AND_DELETE_SCRIPT, keys, (Object[]) values);
+        return deleted != null ? deleted : 0;
+    }
+
     /**
      * Remove driver from the availability pool (when they go offline or start a trip).
      */
@@ -113,4 +160,40 @@ public class LocationService {
         redisTemplate.opsForGeo().remove(DRIVER_LOCATIONS_KEY, driverId.toString());
         log.debug("Removed driver {} from availability pool", driverId);
     }
+
+    /**
+     * Count drivers in the geo index inside a box centred on each point.
+     * All searches go out in one pipelined round trip — used by the surge
+     * engine as the supply side of the demand/supply ratio.
+     *
+     * Counts are approximate: a driver who went silent stays in the geo set
+     * until they go offline or start a trip.
+     */
+    public long[] countDriversInBoxes(double[] lats, double[] lngs, double[] widthsKm, double[] heightsKm) {
+        long[] counts = new long[lats.length];
+        if (lats.length == 0) {
+            return counts;
+        }
+
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (int i = 0; i < lats.length; i++) {
+                    ops.opsForGeo().search(DRIVER_LOCATIONS_KEY,
+                            GeoReference.fromCoordinate(lngs[i], lats[i]),
+                            GeoShape.byBox(widthsKm[i], heightsKm[i], Metrics.KILOMETERS),
+                            RedisGeoCommands.GeoSearchCommandArgs.newGeoSearchArgs());
+                }
+                return null;
+            }
+        });
+
+        for (int i = 0; i < counts.length; i++) {
+            Object result = results.get(i);
+            counts[i] = result instanceof GeoResults<?> geoResults ? geoResults.getContent().size() : 0;
+        }
+        return counts;
+    }
 }
@@ -0,0 +1,33 @@
+package com.gocomet.ridehailing.notification.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Sends straight to the message broker: the in-memory simple broker
+ * (one node only) or, in relay mode, the external STOMP broker that fans
+ * out to every node.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnExpression("'${app.websocket.broker:simple}' != 'redis'")
+public class BrokerWebSocketPublisher implements WebSocketPublisher {
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Value("${app.websocket.broker:simple}")
+    private String broker;
+
+    @Override
+    public void publish(String destination, Object message) {
+        messagingTemplate.convertAndSend(destination, message);
+    }
+
+    @Override
+    public boolean isClusterWide() {
+        return "relay".equals(broker);
+    }
+}
@@ -2,44 +2,57 @@ package com.gocomet.ridehailing.notification.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+/**
+ * STOMP pushes to riders, drivers and the map. Messages go through the
+ * WebSocketPublisher for the configured broker mode, so with relay or redis
+ * they reach clients connected to any node.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class NotificationService {
 
-    private final SimpMessagingTemplate messagingTemplate;
+    private final WebSocketPublisher webSocketPublisher;
+
+    /**
+     * Whether a broadcast from this node reaches clients on every node
+     * (relay / redis) rather than only its own (simple).
+     */
+    public boolean isClusterWide() {
+        return webSocketPublisher.isClusterWide();
+    }
 
     /**
      * Notify a rider about ride status updates.
-     * Frontend subscribes to: /topic/rider/{riderId}
+     * Frontend subscribes to: /topic/rider.{riderId}
      */
     public void notifyRider(UUID riderId, String eventType, Object payload) {
-        String destination = "/topic/rider/" + riderId;
+        String destination = "/topic/rider." + riderId;
         Map<String, Object> message = Map.of(
                 "eventType", eventType,
                 "payload", payload
         );
-        messagingTemplate.convertAndSend(destination, (Object) message);
+        webSocketPublisher.publish(destination, message);
         log.debug("Notified rider {} with event: {}", riderId, eventType);
     }
 
     /**
      * Notify a driver about ride offers or updates.
-     * Frontend subscribes to: /topic/driver/{driverId}
+     * Frontend subscribes to: /topic/driver.{driverId}
      */
     public void notifyDriver(UUID driverId, String eventType, Object payload) {
-        String destination = "/topic/driver/" + driverId;
+        String destination = "/topic/driver." + driverId;
         Map<String, Object> message = Map.of(
                 "eventType", eventType,
                 "payload", payload
         );
-        messagingTemplate.convertAndSend(destination, (Object) message);
+        webSocketPublisher.publish(destination, message);
         log.debug("Notified driver {} with event: {}", driverId, eventType);
     }
 
@@ -54,6 +67,20 @@ public class NotificationService {
                 "lat", lat,
                 "lng", lng
         );
-        messagingTemplate.convertAndSend(destination, (Object) message);
+        webSocketPublisher.publish(destination, message);
+    }
+
+    /**
+     * Broadcast surge multiplier changes for one region (compact, index-aligned arrays).
+     * Frontend subscribes to: /topic/surge.{regionToken}
+     */
+    public void broadcastSurgeDelta(String regionToken, long version, List<String> cells, double[] multipliers) {
+        String destination = "/topic/surge." + regionToken;
+        Map<String, Object> message = Map.of(
+                "v", version,
+                "c", cells,
+                "m", multipliers
+        );
+        webSocketPublisher.publish(destination, message);
     }
 }
@@ -0,0 +1,78 @@
+package com.gocomet.ridehailing.notification.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Redis pub/sub bridge between nodes' simple brokers.
+ *
+ * publish() doesn't touch the local broker: it publishes {destination,
+ * message} on one Redis channel, and every node — this one included —
+ * receives it and hands it to its own simple broker. A client gets the
+ * message from whichever node holds its WebSocket, with no external STOMP
+ * broker to run.
+ *
+ * Every message goes to every node; pub/sub is fire-and-forget, so a node
+ * disconnected from Redis misses what was published meanwhile (clients
+ * recover state by polling, as after any reconnect).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "app.websocket.broker", havingValue = "redis")
+public class RedisWebSocketPublisher implements WebSocketPublisher, MessageListener {
+
+    private final StringRedisTemplate redisTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.websocket.redis-channel:ws:broadcast}")
+    private String channel;
+
+    @Override
+    public void publish(String destination, Object message) {
+        Map<String, Object> envelope = new LinkedHashMap<>();
+        envelope.put("destination", destination);
+        envelope.put("message", message);
+        try {
+            redisTemplate.convertAndSend(channel, objectMapper.writeValueAsString(envelope));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize WebSocket message for " + destination, e);
+        }
+    }
+
+    @Override
+    public boolean isClusterWide() {
+        return true;
+    }
+
+    // Runs on the listener container's thread for every message published by any node
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            JsonNode envelope = objectMapper.readTree(new String(message.getBody(), StandardCharsets.UTF_8));
+            messagingTemplate.convertAndSend(envelope.get("destination").asText(),
+                    (Object) objectMapper.treeToValue(envelope.get("message"), Object.class));
+        } catch (Exception e) {
+            log.warn("Dropped malformed WebSocket bridge message", e);
+        }
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+}
@@ -0,0 +1,17 @@
+package com.gocomet.ridehailing.notification.service;
+
+/**
+ * Delivers a STOMP message to whoever subscribed to a destination — on this
+ * node or, depending on app.websocket.broker, on any node.
+ */
+public interface WebSocketPublisher {
+
+    void publish(String destination, Object message);
+
+    /**
+     * Whether one publish reaches subscribers on every node. When it does,
+     * a message that every node produces (e.g. from replicated state) must
+     * be published by one node only.
+     */
+    boolean isClusterWide();
+}
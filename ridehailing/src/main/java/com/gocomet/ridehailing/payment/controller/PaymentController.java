@@ -2,12 +2,16 @@ package com.gocomet.ridehailing.payment.controller;
 
 import com.gocomet.ridehailing.payment.dto.PaymentRequest;
 import com.gocomet.ridehailing.payment.dto.PaymentResponse;
+import com.gocomet.ridehailing.payment.model.PaymentStatus;
 import com.gocomet.ridehailing.payment.service.PaymentService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
+import java.util.UUID;
+
 @RestController
 @RequestMapping("/v1/payments")
 @RequiredArgsConstructor
@@ -16,10 +20,28 @@ public class PaymentController {
     private final PaymentService paymentService;
 
     /**
-     * POST /v1/payments — Trigger payment flow
+     * POST /v1/payments — Start payment flow
+     * 202 while the PSP call is in flight or a retry is scheduled (poll the Location),
+     * 200 for a replayed key that already settled.
      */
     @PostMapping
     public ResponseEntity<PaymentResponse> processPayment(@Valid @RequestBody PaymentRequest request) {
-        return ResponseEntity.ok(paymentService.processPayment(request));
+        PaymentResponse payment = paymentService.processPayment(request);
+        boolean settled = payment.getStatus() == PaymentStatus.SUCCESS
+                || (payment.getStatus() == PaymentStatus.FAILED && payment.getNextAttemptAt() == null);
+        if (settled) {
+            return ResponseEntity.ok(payment);
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/v1/payments/" + payment.getId()))
+                .body(payment);
+    }
+
+    /**
+     * GET /v1/payments/{id} — Payment status
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<PaymentResponse> getPayment(@PathVariable UUID id) {
+        return ResponseEntity.ok(paymentService.getPayment(id));
     }
 }
@@ -0,0 +1,46 @@
+package com.gocomet.ridehailing.payment.controller;
+
+import com.gocomet.ridehailing.payment.service.PspGateway;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/v1/admin/psp")
+@RequiredArgsConstructor
+public class PspAdminController {
+
+    private final PspGateway pspGateway;
+
+    /**
+     * GET /v1/admin/psp — Circuit breaker state and bulkhead saturation
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getStatus() {
+        return ResponseEntity.ok(pspGateway.status());
+    }
+
+    /**
+     * POST /v1/admin/psp/circuit/open — Stop sending charges to the PSP (kill-switch)
+     * Payments queue up as PROCESSING; trial calls resume after the open period.
+     */
+    @PostMapping("/circuit/open")
+    public ResponseEntity<Map<String, Object>> openCircuit() {
+        pspGateway.forceOpen();
+        return ResponseEntity.ok(pspGateway.status());
+    }
+
+    /**
+     * POST /v1/admin/psp/circuit/reset — Close the circuit and clear its window
+     */
+    @PostMapping("/circuit/reset")
+    public ResponseEntity<Map<String, Object>> resetCircuit() {
+        pspGateway.reset();
+        return ResponseEntity.ok(pspGateway.status());
+    }
+}
@@ -17,10 +17,14 @@ public class PaymentResponse {
 
     private UUID id;
     private UUID tripId;
+    private UUID riderId;
     private BigDecimal amount;
     private String currency;
     private PaymentStatus status;
     private PaymentMethod paymentMethod;
     private String pspTransactionId;
+    private Integer attempts;
+    // Set while a retry is scheduled; null once the payment has settled
+    private LocalDateTime nextAttemptAt;
     private LocalDateTime createdAt;
 }
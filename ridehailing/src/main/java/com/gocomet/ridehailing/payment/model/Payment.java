@@ -15,7 +15,8 @@ import java.util.UUID;
 @Table(name = "payments", indexes = {
         @Index(name = "idx_payments_trip_id", columnList = "trip_id"),
         @Index(name = "idx_payments_rider_id", columnList = "rider_id"),
-        @Index(name = "idx_payments_idempotency", columnList = "idempotency_key", unique = true)
+        @Index(name = "idx_payments_idempotency", columnList = "idempotency_key", unique = true),
+        @Index(name = "idx_payments_status_next_attempt", columnList = "status, next_attempt_at")
 })
 @Getter
 @Setter
@@ -58,6 +59,20 @@ public class Payment {
     @Column(name = "payment_method", nullable = false)
     private PaymentMethod paymentMethod;
 
+    // Charge attempts — each retry of a declined charge is a new attempt with its own PSP key
+    @Column(name = "attempts")
+    @Builder.Default
+    private Integer attempts = 1;
+
+    // Passes by PaymentRetryEngine, including re-asks of the same attempt; drives the backoff
+    @Column(name = "retries")
+    @Builder.Default
+    private Integer retries = 0;
+
+    // When PaymentRetryEngine picks this payment up next; null once settled for good
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -2,13 +2,94 @@ package com.gocomet.ridehailing.payment.repository;
 
 import com.gocomet.ridehailing.payment.model.Payment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, UUID> {
     Optional<Payment> findByIdempotencyKey(String idempotencyKey);
-    Optional<Payment> findByTripId(UUID tripId);
+
+    // Paid, being charged, or a declined charge still scheduled for retry
+    @Query("SELECT COUNT(p) > 0 FROM Payment p WHERE p.trip.id = :tripId AND ("
+            + "p.status IN (com.gocomet.ridehailing.payment.model.PaymentStatus.SUCCESS, "
+            + "com.gocomet.ridehailing.payment.model.PaymentStatus.PROCESSING) "
+            + "OR (p.status = com.gocomet.ridehailing.payment.model.PaymentStatus.FAILED "
+            + "AND p.nextAttemptAt IS NOT NULL))")
+    boolean hasOpenPayment(@Param("tripId") UUID tripId);
+
+    /**
+     * A payment claimed by PaymentRetryEngine, as it was before the claim.
+     */
+    interface DuePayment {
+        UUID getId();
+
+        String getIdempotencyKey();
+
+        BigDecimal getAmount();
+
+        String getCurrency();
+
+        Integer getAttempts();
+
+        String getPreviousStatus();
+    }
+
+    /**
+     * Claim up to :limit payments that are due, in one statement:
+     * - FAILED with a retry due — becomes the next charge attempt
+     * - PROCESSING with a retry due (PSP error, or an expired claim)
+     * - PROCESSING never scheduled and untouched since :staleCutoff (the
+     *   instance died mid-call) — reconciled with the same PSP key
+     * Claimed rows are PROCESSING with next_attempt_at = :leaseUntil, so a
+     * crashed engine's claims come due again. Rows locked by another engine
+     * are skipped.
+     */
+    @Query(value = """
+            UPDATE payments p
+            SET status = 'PROCESSING',
+                attempts = COALESCE(p.attempts, 1) + CASE WHEN due.status = 'FAILED' THEN 1 ELSE 0 END,
+                retries = COALESCE(p.retries, 0) + 1,
+                next_attempt_at = :leaseUntil,
+                updated_at = :now
+            FROM (
+                SELECT id, status
+                FROM payments
+                WHERE (status IN ('FAILED', 'PROCESSING') AND next_attempt_at <= :now)
+                   OR (status = 'PROCESSING' AND next_attempt_at IS NULL AND updated_at < :staleCutoff)
+                ORDER BY COALESCE(next_attempt_at, updated_at)
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            ) due
+            WHERE p.id = due.id
+            RETURNING p.id AS "id", p.idempotency_key AS "idempotencyKey", p.amount AS "amount",
+                      p.currency AS "currency", p.attempts AS "attempts", due.status AS "previousStatus"
+            """, nativeQuery = true)
+    List<DuePayment> claimDue(@Param("now") LocalDateTime now,
+                              @Param("staleCutoff") LocalDateTime staleCutoff,
+                              @Param("leaseUntil") LocalDateTime leaseUntil,
+                              @Param("limit") int limit);
+
+    interface Backlog {
+        long getDue();
+
+        double getOldestDueSeconds();
+    }
+
+    // Same predicate as claimDue — what the engine still has to work through
+    @Query(value = """
+            SELECT COUNT(*) AS "due",
+                   COALESCE(EXTRACT(EPOCH FROM (CAST(:now AS timestamp)
+                           - MIN(COALESCE(next_attempt_at, updated_at)))), 0) AS "oldestDueSeconds"
+            FROM payments
+            WHERE (status IN ('FAILED', 'PROCESSING') AND next_attempt_at <= :now)
+               OR (status = 'PROCESSING' AND next_attempt_at IS NULL AND updated_at < :staleCutoff)
+            """, nativeQuery = true)
+    Backlog backlog(@Param("now") LocalDateTime now, @Param("staleCutoff") LocalDateTime staleCutoff);
 }
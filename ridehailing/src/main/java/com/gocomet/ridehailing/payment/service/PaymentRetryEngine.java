@@ -0,0 +1,166 @@
+package com.gocomet.ridehailing.payment.service;
+
+import com.gocomet.ridehailing.payment.repository.PaymentRepository;
+import com.gocomet.ridehailing.payment.repository.PaymentRepository.Backlog;
+import com.gocomet.ridehailing.payment.repository.PaymentRepository.DuePayment;
+import com.gocomet.ridehailing.payment.service.PaymentService.PspOutcome;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retries and reconciles payments that didn't settle on the first PSP call.
+ *
+ * Each pass claims up to batch-size due payments with one UPDATE … FOR
+ * UPDATE SKIP LOCKED (see PaymentRepository.claimDue), so several instances
+ * can run the engine without double-charging. Claimed payments are:
+ *
+ * - retried: FAILED with a retry due — a new charge attempt under its own
+ *   PSP key (PaymentService.pspKey)
+ * - reconciled: PROCESSING after a PSP error, or left behind by an instance
+ *   that died mid-call — re-sent with the same key, so the PSP answers with
+ *   what it already did instead of charging again
+ *
+ * Calls go through PspGateway (timeout, circuit breaker, bulkhead); the
+ * engine keeps up to concurrency of them in flight and skips its pass while
+ * the circuit is open, and the whole batch is recorded in one short
+ * transaction. Backoff and the attempt limit live in PaymentService, shared
+ * with the first call. A claim is a lease: if the engine dies before
+ * recording, the payments come due again after lease-seconds.
+ *
+ * Metrics: payments.retry.attempts{kind, outcome} counts PSP calls made by
+ * the engine; payments.retry.backlog and payments.retry.oldest.due.seconds
+ * show how far behind it is.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentRetryEngine {
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentService paymentService;
+    private final PspGateway pspGateway;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.payments.retry.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.payments.retry.concurrency:16}")
+    private int concurrency;
+
+    @Value("${app.payments.retry.stale-after-seconds:120}")
+    private long staleAfterSeconds;
+
+    @Value("${app.payments.retry.lease-seconds:120}")
+    private long leaseSeconds;
+
+    private Semaphore inFlight;
+
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong oldestDueSeconds = new AtomicLong();
+
+    @PostConstruct
+    void start() {
+        inFlight = new Semaphore(concurrency);
+
+        Gauge.builder("payments.retry.backlog", backlog, AtomicLong::get)
+                .description("Payments due for retry or reconciliation")
+                .register(meterRegistry);
+        Gauge.builder("payments.retry.oldest.due.seconds", oldestDueSeconds, AtomicLong::get)
+                .description("How long the oldest due payment has been waiting")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.payments.retry.interval-ms:5000}")
+    public void run() {
+        int total = 0;
+        try {
+            // Due payments wait in the table while the PSP circuit is open
+            if (!pspGateway.isAvailable()) {
+                refreshBacklog();
+                return;
+            }
+            List<DuePayment> claimed;
+            do {
+                claimed = transactionTemplate.execute(status -> claim());
+                if (claimed == null || claimed.isEmpty()) {
+                    break;
+                }
+                paymentService.recordOutcomes(callPsp(claimed));
+                total += claimed.size();
+            } while (claimed.size() == batchSize);
+        } catch (Exception e) {
+            log.error("Payment retry pass failed — claimed payments come due again after their lease", e);
+        }
+        if (total > 0) {
+            log.info("💳 Retried or reconciled {} payments", total);
+        }
+        refreshBacklog();
+    }
+
+    private List<DuePayment> claim() {
+        LocalDateTime now = LocalDateTime.now();
+        return paymentRepository.claimDue(now, now.minusSeconds(staleAfterSeconds),
+                now.plusSeconds(leaseSeconds), batchSize);
+    }
+
+    // At most concurrency calls in flight; the engine thread waits for a slot
+    private List<PspOutcome> callPsp(List<DuePayment> claimed) {
+        List<CompletableFuture<PspOutcome>> calls = new ArrayList<>(claimed.size());
+        for (DuePayment payment : claimed) {
+            inFlight.acquireUninterruptibly();
+            calls.add(pspGateway.charge(
+                            PaymentService.pspKey(payment.getIdempotencyKey(), payment.getAttempts()),
+                            payment.getAmount(), payment.getCurrency())
+                    .handle((result, error) -> {
+                        inFlight.release();
+                        count(payment, result, error);
+                        return new PspOutcome(payment.getId(), payment.getAttempts(), result, error);
+                    }));
+        }
+        return calls.stream().map(CompletableFuture::join).toList();
+    }
+
+    private void count(DuePayment payment, Map<String, Object> result, Throwable error) {
+        String kind = "FAILED".equals(payment.getPreviousStatus()) ? "retry" : "reconcile";
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+        String outcome = cause instanceof PspGateway.PspRejectedException ? "rejected"
+                : cause != null ? "error"
+                : "SUCCESS".equals(result.get("status")) ? "success" : "declined";
+        Counter.builder("payments.retry.attempts")
+                .tag("kind", kind)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void refreshBacklog() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Backlog current = paymentRepository.backlog(now, now.minusSeconds(staleAfterSeconds));
+            backlog.set(current.getDue());
+            oldestDueSeconds.set((long) current.getOldestDueSeconds());
+        } catch (Exception e) {
+            log.warn("Failed to refresh payment retry backlog", e);
+        }
+    }
+}
@@ -7,20 +7,50 @@ import com.gocomet.ridehailing.notification.service.NotificationService;
 import com.gocomet.ridehailing.payment.dto.PaymentRequest;
 import com.gocomet.ridehailing.payment.dto.PaymentResponse;
 import com.gocomet.ridehailing.payment.model.Payment;
+import com.gocomet.ridehailing.payment.model.PaymentMethod;
 import com.gocomet.ridehailing.payment.model.PaymentStatus;
 import com.gocomet.ridehailing.payment.repository.PaymentRepository;
 import com.gocomet.ridehailing.trip.model.Trip;
 import com.gocomet.ridehailing.trip.model.TripStatus;
 import com.gocomet.ridehailing.trip.repository.TripRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Payment orchestration, with the PSP call outside any transaction.
+ *
+ * processPayment runs a short transaction that validates the trip and
+ * inserts the payment as PROCESSING, then hands the charge to PspGateway
+ * (circuit breaker + bulkhead) and returns — POST /v1/payments answers 202
+ * and the client polls GET /v1/payments/{id} (or waits for PAYMENT_* on its
+ * WebSocket channel). When the PSP answers, a second short transaction on a
+ * bounded record pool stores SUCCESS or FAILED. No connection or request
+ * thread is held while the PSP works.
+ *
+ * Declines and PSP errors are not final: the payment is scheduled for
+ * another attempt (next_attempt_at) and PaymentRetryEngine picks it up.
+ * Riders are notified once a payment settles — SUCCESS, or FAILED after
+ * the last attempt.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -28,25 +58,121 @@ public class PaymentService {
 
     private final PaymentRepository paymentRepository;
     private final TripRepository tripRepository;
-    private final PspStubService pspStubService;
+    private final PspGateway pspGateway;
     private final NotificationService notificationService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.payments.retry.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${app.payments.retry.base-backoff-seconds:30}")
+    private long baseBackoffSeconds;
+
+    @Value("${app.payments.retry.max-backoff-seconds:1800}")
+    private long maxBackoffSeconds;
+
+    @Value("${app.payments.record-pool-size:8}")
+    private int recordPoolSize;
+
+    @Value("${app.payments.record-queue-capacity:1000}")
+    private int recordQueueCapacity;
+
+    private ThreadPoolExecutor recordExecutor;
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threads = new AtomicInteger();
+        recordExecutor = new ThreadPoolExecutor(recordPoolSize, recordPoolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(recordQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "payment-record-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        recordExecutor.shutdown();
+        if (!recordExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Payment record pool stopped with {} results queued — those payments stay PROCESSING",
+                    recordExecutor.getQueue().size());
+            recordExecutor.shutdownNow();
+        }
+    }
 
     /**
-     * Process payment for a completed trip.
-     * 1. Check idempotency
-     * 2. Validate trip is completed and has a fare
-     * 3. Create payment record
-     * 4. Call PSP stub
-     * 5. Update payment status
-     * 6. Notify rider
+     * Start the payment for a completed trip.
+     * 1. Check idempotency (a replayed key returns that payment as it is now)
+     * 2. Validate trip is completed, has a fare and isn't paid or being paid
+     * 3. Create payment record as PROCESSING — committed at once
+     * 4. Call the PSP asynchronously; record its result (or schedule a retry)
      */
-    @Transactional
     public PaymentResponse processPayment(PaymentRequest request) {
+        Started started = transactionTemplate.execute(status -> createProcessing(request));
+        if (started.created()) {
+            send(started.payment().getId(), request.getIdempotencyKey(), started.payment().getAmount(),
+                    started.payment().getCurrency());
+        }
+        return started.payment();
+    }
+
+    /**
+     * Open the payment for a trip inside the transaction that completes it.
+     * The PROCESSING row commits with the trip, so a crash before the charge
+     * goes out can't leave the trip unpaid: PaymentRetryEngine reconciles a
+     * row that was never sent once it is stale-after-seconds old. Send the
+     * charge after commit with chargeOpened().
+     */
+    public UUID openForTrip(Trip trip, PaymentMethod paymentMethod) {
+        Payment payment = paymentRepository.save(Payment.builder()
+                .trip(trip)
+                .rider(trip.getRider())
+                .amount(trip.getTotalFare())
+                .paymentMethod(paymentMethod)
+                .status(PaymentStatus.PROCESSING)
+                .idempotencyKey("trip:" + trip.getId())
+                .build());
+        return payment.getId();
+    }
+
+    /**
+     * Send the first charge for a payment opened with openForTrip. Does
+     * nothing if the retry engine has already picked it up.
+     */
+    public void chargeOpened(UUID paymentId) {
+        Payment payment = paymentRepository.findById(paymentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Payment", "id", paymentId));
+        if (payment.getStatus() != PaymentStatus.PROCESSING
+                || (payment.getRetries() != null && payment.getRetries() > 0)) {
+            return;
+        }
+        send(paymentId, payment.getIdempotencyKey(), payment.getAmount(), payment.getCurrency());
+    }
+
+    // First attempt: the PSP key is the payment's own idempotency key
+    private void send(UUID paymentId, String idempotencyKey, BigDecimal amount, String currency) {
+        pspGateway.charge(idempotencyKey, amount, currency)
+                // Off the PSP gateway's threads — recording opens a DB transaction
+                .whenCompleteAsync((pspResult, error) -> complete(paymentId, pspResult, error), recordExecutor);
+    }
+
+    public PaymentResponse getPayment(UUID paymentId) {
+        Payment payment = paymentRepository.findById(paymentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Payment", "id", paymentId));
+        return toResponse(payment);
+    }
+
+    private record Started(PaymentResponse payment, boolean created) {
+    }
+
+    private Started createProcessing(PaymentRequest request) {
         // Idempotency check
         Optional<Payment> existing = paymentRepository.findByIdempotencyKey(request.getIdempotencyKey());
         if (existing.isPresent()) {
             log.info("Duplicate payment request with key: {}", request.getIdempotencyKey());
-            return toResponse(existing.get());
+            return new Started(toResponse(existing.get()), false);
         }
 
         // Validate trip
@@ -61,10 +187,9 @@ public class PaymentService {
             throw new IllegalArgumentException("Trip fare has not been calculated yet");
         }
 
-        // Check if payment already exists for this trip
-        Optional<Payment> existingPayment = paymentRepository.findByTripId(trip.getId());
-        if (existingPayment.isPresent() && existingPayment.get().getStatus() == PaymentStatus.SUCCESS) {
-            throw new DuplicateRequestException("Payment already processed for this trip");
+        // A trip is charged once; a payment that FAILED for good may be retried with a new key
+        if (paymentRepository.hasOpenPayment(trip.getId())) {
+            throw new DuplicateRequestException("Payment already processed or in progress for this trip");
         }
 
         // Create payment record
@@ -77,44 +202,145 @@ public class PaymentService {
                 .idempotencyKey(request.getIdempotencyKey())
                 .build();
         payment = paymentRepository.save(payment);
+        return new Started(toResponse(payment), true);
+    }
 
-        // Call PSP stub
-        Map<String, Object> pspResult = pspStubService.processPayment(
-                request.getIdempotencyKey(),
-                trip.getTotalFare(),
-                payment.getCurrency()
-        );
+    /**
+     * A PSP call's result (or failure) for the given charge attempt.
+     */
+    public record PspOutcome(UUID paymentId, int attempts, Map<String, Object> result, Throwable error) {
+    }
+
+    /**
+     * The key a charge attempt is sent to the PSP with. The first attempt uses
+     * the client's key; a retry after a decline is a new charge and gets its
+     * own key, while re-sending the same attempt (PSP error, crash) reuses it
+     * so the PSP answers with what it already did.
+     */
+    public static String pspKey(String idempotencyKey, int attempts) {
+        return attempts <= 1 ? idempotencyKey : idempotencyKey + ":" + attempts;
+    }
 
-        // Update payment based on PSP response
-        String pspStatus = (String) pspResult.get("status");
-        if ("SUCCESS".equals(pspStatus)) {
+    /**
+     * Record PSP outcomes for claimed payments in one short transaction, then
+     * notify riders whose payment settled.
+     */
+    public void recordOutcomes(List<PspOutcome> outcomes) {
+        List<PaymentResponse> settled = transactionTemplate.execute(status -> {
+            Map<UUID, PspOutcome> byId = new HashMap<>();
+            outcomes.forEach(outcome -> byId.put(outcome.paymentId(), outcome));
+
+            List<Payment> payments = paymentRepository.findAllById(byId.keySet());
+            List<Payment> changed = new ArrayList<>(payments.size());
+            for (Payment payment : payments) {
+                if (apply(payment, byId.get(payment.getId()))) {
+                    changed.add(payment);
+                }
+            }
+            return paymentRepository.saveAll(changed).stream()
+                    .filter(PaymentService::isSettled)
+                    .map(this::toResponse)
+                    .toList();
+        });
+        if (settled != null) {
+            settled.forEach(this::notifySettled);
+        }
+    }
+
+    // PSP answered (or the call failed) — record the outcome in its own short transaction
+    private void complete(UUID paymentId, Map<String, Object> pspResult, Throwable error) {
+        if (error instanceof PspGateway.PspRejectedException) {
+            // Never reached the PSP (circuit open / bulkhead full) — queued for the retry engine
+            log.warn("PSP call for payment {} rejected: {} — scheduled for retry", paymentId, error.getMessage());
+        } else if (error != null) {
+            // Stays PROCESSING: the PSP may or may not have charged — re-sent with the same key later
+            log.error("PSP call for payment {} failed — scheduled for retry", paymentId, error);
+        }
+        try {
+            PaymentResponse settled = transactionTemplate.execute(status -> {
+                Payment payment = paymentRepository.findById(paymentId)
+                        .orElseThrow(() -> new ResourceNotFoundException("Payment", "id", paymentId));
+                if (!apply(payment, new PspOutcome(paymentId, 1, pspResult, error))) {
+                    return null;
+                }
+                payment = paymentRepository.save(payment);
+                return isSettled(payment) ? toResponse(payment) : null;
+            });
+            if (settled != null) {
+                notifySettled(settled);
+            }
+        } catch (Exception e) {
+            log.error("Failed to record PSP result for payment {}", paymentId, e);
+        }
+    }
+
+    /**
+     * Apply an outcome to a payment still waiting on that attempt. Returns
+     * false if the payment has moved on (settled, or claimed for a later
+     * attempt) and the outcome is stale.
+     *
+     * - SUCCESS settles the payment
+     * - a decline schedules a new attempt with backoff, up to max-attempts,
+     *   after which the payment is FAILED for good
+     * - a PSP error leaves it PROCESSING and schedules the same attempt again
+     */
+    private boolean apply(Payment payment, PspOutcome outcome) {
+        if (outcome == null || payment.getStatus() != PaymentStatus.PROCESSING
+                || attemptsOf(payment) != outcome.attempts()) {
+            return false;
+        }
+
+        if (outcome.error() != null) {
+            payment.setNextAttemptAt(nextAttemptAt(payment));
+        } else if ("SUCCESS".equals(outcome.result().get("status"))) {
             payment.setStatus(PaymentStatus.SUCCESS);
-            payment.setPspTransactionId((String) pspResult.get("pspTransactionId"));
+            payment.setPspTransactionId((String) outcome.result().get("pspTransactionId"));
+            payment.setNextAttemptAt(null);
         } else {
             payment.setStatus(PaymentStatus.FAILED);
+            payment.setNextAttemptAt(attemptsOf(payment) < maxAttempts ? nextAttemptAt(payment) : null);
         }
-        payment = paymentRepository.save(payment);
+        return true;
+    }
 
-        // Notify rider
-        notificationService.notifyRider(trip.getRider().getId(), "PAYMENT_" + payment.getStatus(), Map.of(
+    // base × 2^retries, capped, with jitter over the upper half so retries of one outage spread out
+    private LocalDateTime nextAttemptAt(Payment payment) {
+        int retries = payment.getRetries() != null ? payment.getRetries() : 0;
+        long backoff = Math.min(maxBackoffSeconds, baseBackoffSeconds << Math.min(retries, 20));
+        long jittered = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        return LocalDateTime.now().plusSeconds(jittered);
+    }
+
+    private static int attemptsOf(Payment payment) {
+        return payment.getAttempts() != null ? payment.getAttempts() : 1;
+    }
+
+    private static boolean isSettled(Payment payment) {
+        return payment.getStatus() == PaymentStatus.SUCCESS
+                || (payment.getStatus() == PaymentStatus.FAILED && payment.getNextAttemptAt() == null);
+    }
+
+    private void notifySettled(PaymentResponse payment) {
+        notificationService.notifyRider(payment.getRiderId(), "PAYMENT_" + payment.getStatus(), Map.of(
                 "paymentId", payment.getId().toString(),
                 "amount", payment.getAmount().toString(),
                 "status", payment.getStatus().name()
         ));
-
-        log.info("Payment {} for trip {} — status: {}", payment.getId(), trip.getId(), payment.getStatus());
-        return toResponse(payment);
+        log.info("Payment {} for trip {} — status: {}", payment.getId(), payment.getTripId(), payment.getStatus());
     }
 
     private PaymentResponse toResponse(Payment payment) {
         return PaymentResponse.builder()
                 .id(payment.getId())
                 .tripId(payment.getTrip().getId())
+                .riderId(payment.getRider().getId())
                 .amount(payment.getAmount())
                 .currency(payment.getCurrency())
                 .status(payment.getStatus())
                 .paymentMethod(payment.getPaymentMethod())
                 .pspTransactionId(payment.getPspTransactionId())
+                .attempts(payment.getAttempts())
+                .nextAttemptAt(payment.getNextAttemptAt())
                 .createdAt(payment.getCreatedAt())
                 .build();
     }
@@ -0,0 +1,172 @@
+package com.gocomet.ridehailing.payment.service;
+
+import java.util.Arrays;
+
+/**
+ * Count-based circuit breaker over the last window-size PSP calls.
+ *
+ * CLOSED → OPEN when at least minimum-calls are recorded and the failure
+ * rate or the slow-call rate reaches its threshold. OPEN rejects every call
+ * for open-millis, then HALF_OPEN lets half-open-calls trial calls through:
+ * all of them healthy closes the breaker, any failure or slow call opens it
+ * again.
+ *
+ * Synchronized — it is touched once per PSP call and once per result, far
+ * below the rate where the lock would matter.
+ */
+final class PspCircuitBreaker {
+
+    enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long openMillis;
+    private final int halfOpenCalls;
+
+    // Ring buffer of the last windowSize outcomes
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAtMillis;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    PspCircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                      double slowCallRateThreshold, long openMillis, int halfOpenCalls) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openMillis = openMillis;
+        this.halfOpenCalls = halfOpenCalls;
+        this.failed = new boolean[windowSize];
+        this.slow = new boolean[windowSize];
+    }
+
+    /**
+     * Whether a call may go to the PSP now. In HALF_OPEN this takes one of
+     * the trial slots.
+     */
+    synchronized boolean tryAcquire() {
+        return switch (currentState()) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (trialsStarted >= halfOpenCalls) {
+                    yield false;
+                }
+                trialsStarted++;
+                yield true;
+            }
+        };
+    }
+
+    /**
+     * Give back a permit from tryAcquire for a call that was never sent.
+     */
+    synchronized void cancel() {
+        if (state == State.HALF_OPEN && trialsStarted > 0) {
+            trialsStarted--;
+        }
+    }
+
+    synchronized void record(boolean failure, boolean slowCall) {
+        switch (currentState()) {
+            case HALF_OPEN -> {
+                if (failure || slowCall) {
+                    transitionTo(State.OPEN);
+                } else if (++trialsSucceeded >= halfOpenCalls) {
+                    transitionTo(State.CLOSED);
+                }
+            }
+            case CLOSED -> {
+                add(failure, slowCall);
+                if (recorded >= minimumCalls
+                        && (failureRate() >= failureRateThreshold || slowCallRate() >= slowCallRateThreshold)) {
+                    transitionTo(State.OPEN);
+                }
+            }
+            case OPEN -> {
+                // A call that started before the breaker opened — nothing to learn from it
+            }
+        }
+    }
+
+    synchronized State state() {
+        return currentState();
+    }
+
+    synchronized void forceOpen() {
+        transitionTo(State.OPEN);
+    }
+
+    synchronized void reset() {
+        transitionTo(State.CLOSED);
+    }
+
+    synchronized double failureRate() {
+        return recorded == 0 ? 0 : (double) failures / recorded;
+    }
+
+    synchronized double slowCallRate() {
+        return recorded == 0 ? 0 : (double) slowCalls / recorded;
+    }
+
+    synchronized int recordedCalls() {
+        return recorded;
+    }
+
+    /**
+     * When an OPEN breaker lets trial calls through, or 0 if not OPEN.
+     */
+    synchronized long retryAtMillis() {
+        return currentState() == State.OPEN ? openedAtMillis + openMillis : 0;
+    }
+
+    private State currentState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAtMillis >= openMillis) {
+            transitionTo(State.HALF_OPEN);
+        }
+        return state;
+    }
+
+    private void transitionTo(State to) {
+        state = to;
+        trialsStarted = 0;
+        trialsSucceeded = 0;
+        if (to == State.OPEN) {
+            openedAtMillis = System.currentTimeMillis();
+        }
+        if (to == State.CLOSED) {
+            Arrays.fill(failed, false);
+            Arrays.fill(slow, false);
+            next = 0;
+            recorded = 0;
+            failures = 0;
+            slowCalls = 0;
+        }
+    }
+
+    private void add(boolean failure, boolean slowCall) {
+        if (recorded == windowSize) {
+            failures -= failed[next] ? 1 : 0;
+            slowCalls -= slow[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failed[next] = failure;
+        slow[next] = slowCall;
+        failures += failure ? 1 : 0;
+        slowCalls += slowCall ? 1 : 0;
+        next = (next + 1) % windowSize;
+    }
+}
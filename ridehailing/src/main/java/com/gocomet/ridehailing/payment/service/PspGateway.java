@@ -0,0 +1,253 @@
+package com.gocomet.ridehailing.payment.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The only way to the PSP: every charge goes through a circuit breaker and
+ * a bulkhead, so a slow or failing PSP can't hold threads that ride
+ * matching needs.
+ *
+ * - Bulkhead: at most max-concurrent calls in flight and queue-capacity
+ *   waiting for a slot; beyond that a call is rejected at once. Calls are
+ *   issued and completed on the bulkhead's own psp-call threads — never on
+ *   a request thread or the PSP client's.
+ * - Circuit breaker (PspCircuitBreaker): errors, timeouts (call-timeout-ms)
+ *   and calls slower than slow-call-ms count against the PSP; while OPEN,
+ *   calls fail at once without reaching it.
+ *
+ * A rejected or short-circuited charge fails with PspRejectedException. The
+ * payment stays PROCESSING and PaymentRetryEngine sends it later with the
+ * same key — rejected payments are queued in the database, not in memory.
+ *
+ * Metrics: psp.calls{outcome} (timer), psp.circuit.state (0 closed,
+ * 1 half-open, 2 open), psp.bulkhead.in.flight, psp.bulkhead.queued and
+ * psp.rejected{reason}. GET /v1/admin/psp shows the same.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PspGateway {
+
+    /**
+     * The call never reached the PSP — nothing was charged.
+     */
+    public static class PspRejectedException extends RuntimeException {
+        public PspRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private final PspStubService pspStubService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.psp.bulkhead.max-concurrent:64}")
+    private int maxConcurrent;
+
+    @Value("${app.psp.bulkhead.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${app.psp.bulkhead.threads:4}")
+    private int threads;
+
+    @Value("${app.psp.call-timeout-ms:10000}")
+    private long callTimeoutMs;
+
+    @Value("${app.psp.circuit.window-size:50}")
+    private int windowSize;
+
+    @Value("${app.psp.circuit.minimum-calls:20}")
+    private int minimumCalls;
+
+    @Value("${app.psp.circuit.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+
+    @Value("${app.psp.circuit.slow-call-ms:3000}")
+    private long slowCallMs;
+
+    @Value("${app.psp.circuit.slow-call-rate-threshold:0.8}")
+    private double slowCallRateThreshold;
+
+    @Value("${app.psp.circuit.open-seconds:30}")
+    private long openSeconds;
+
+    @Value("${app.psp.circuit.half-open-calls:5}")
+    private int halfOpenCalls;
+
+    private PspCircuitBreaker breaker;
+    private Semaphore permits;
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private ThreadPoolExecutor executor;
+
+    private Counter rejectedOpen;
+    private Counter rejectedFull;
+
+    private record Charge(String idempotencyKey, BigDecimal amount, String currency,
+                          CompletableFuture<Map<String, Object>> result) {
+    }
+
+    @PostConstruct
+    void start() {
+        breaker = new PspCircuitBreaker(windowSize, minimumCalls, failureRateThreshold,
+                slowCallRateThreshold, openSeconds * 1000, halfOpenCalls);
+        permits = new Semaphore(maxConcurrent);
+
+        // Unbounded queue, but the bulkhead admits at most maxConcurrent + queueCapacity charges
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "psp-call-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        Gauge.builder("psp.circuit.state", this, gateway -> gateway.breaker.state().ordinal())
+                .description("PSP circuit breaker: 0 closed, 1 half-open, 2 open")
+                .register(meterRegistry);
+        Gauge.builder("psp.bulkhead.in.flight", this, gateway -> maxConcurrent - gateway.permits.availablePermits())
+                .register(meterRegistry);
+        Gauge.builder("psp.bulkhead.queued", queued, AtomicInteger::get)
+                .register(meterRegistry);
+        rejectedOpen = Counter.builder("psp.rejected").tag("reason", "circuit_open").register(meterRegistry);
+        rejectedFull = Counter.builder("psp.rejected").tag("reason", "bulkhead_full").register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            // Unfinished charges stay PROCESSING and are reconciled by the retry engine
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Charge through the PSP. Never blocks the caller: completes with the
+     * PSP's answer, or exceptionally with PspRejectedException (not sent),
+     * a timeout or the PSP's error (outcome unknown).
+     */
+    public CompletableFuture<Map<String, Object>> charge(String idempotencyKey, BigDecimal amount, String currency) {
+        if (!breaker.tryAcquire()) {
+            rejectedOpen.increment();
+            return CompletableFuture.failedFuture(new PspRejectedException("PSP circuit open"));
+        }
+
+        Charge charge = new Charge(idempotencyKey, amount, currency, new CompletableFuture<>());
+        if (permits.tryAcquire()) {
+            executor.execute(() -> send(charge));
+        } else if (queued.incrementAndGet() <= queueCapacity) {
+            waiting.add(() -> send(charge));
+            dispatchWaiting();
+        } else {
+            queued.decrementAndGet();
+            breaker.cancel();
+            rejectedFull.increment();
+            return CompletableFuture.failedFuture(new PspRejectedException("PSP bulkhead full"));
+        }
+        return charge.result();
+    }
+
+    /**
+     * Whether a charge would currently be let through (the breaker isn't OPEN).
+     */
+    public boolean isAvailable() {
+        return breaker.state() != PspCircuitBreaker.State.OPEN;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("circuitState", breaker.state().name());
+        body.put("failureRate", breaker.failureRate());
+        body.put("slowCallRate", breaker.slowCallRate());
+        body.put("recordedCalls", breaker.recordedCalls());
+        long retryAt = breaker.retryAtMillis();
+        body.put("retryInMs", retryAt == 0 ? 0 : Math.max(0, retryAt - System.currentTimeMillis()));
+        body.put("inFlight", maxConcurrent - permits.availablePermits());
+        body.put("maxConcurrent", maxConcurrent);
+        body.put("queued", queued.get());
+        body.put("queueCapacity", queueCapacity);
+        body.put("rejectedCircuitOpen", (long) rejectedOpen.count());
+        body.put("rejectedBulkheadFull", (long) rejectedFull.count());
+        return body;
+    }
+
+    public void forceOpen() {
+        breaker.forceOpen();
+        log.warn("PSP circuit forced OPEN");
+    }
+
+    public void reset() {
+        breaker.reset();
+        log.warn("PSP circuit reset to CLOSED");
+    }
+
+    private void send(Charge charge) {
+        long startedAt = System.nanoTime();
+        CompletableFuture<Map<String, Object>> call;
+        try {
+            call = pspStubService.processPayment(charge.idempotencyKey(), charge.amount(), charge.currency());
+        } catch (Exception e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.orTimeout(callTimeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((result, error) -> {
+                    long elapsedNanos = System.nanoTime() - startedAt;
+                    permits.release();
+                    dispatchWaiting();
+
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    breaker.record(cause != null, elapsedNanos >= TimeUnit.MILLISECONDS.toNanos(slowCallMs));
+                    Timer.builder("psp.calls")
+                            .tag("outcome", cause != null ? "error"
+                                    : "SUCCESS".equals(result.get("status")) ? "success" : "declined")
+                            .register(meterRegistry)
+                            .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+                    // Hand the result to the caller on a bulkhead thread, off the PSP client's
+                    executor.execute(() -> {
+                        if (cause != null) {
+                            charge.result().completeExceptionally(cause);
+                        } else {
+                            charge.result().complete(result);
+                        }
+                    });
+                });
+    }
+
+    // Start waiting charges while slots are free
+    private void dispatchWaiting() {
+        while (queued.get() > 0 && permits.tryAcquire()) {
+            Runnable next = waiting.poll();
+            if (next == null) {
+                permits.release();
+                return;
+            }
+            queued.decrementAndGet();
+            executor.execute(next);
+        }
+    }
+}
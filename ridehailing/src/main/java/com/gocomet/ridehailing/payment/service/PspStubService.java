@@ -1,56 +1,179 @@
 package com.gocomet.ridehailing.payment.service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.util.Map;
-import java.util.Random;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Simulates an external Payment Service Provider (like Razorpay/Stripe).
- * 
+ *
  * Behavior:
- * - 90% success rate
- * - Random delay 200ms-1500ms (simulates network latency)
- * - Idempotent (same idempotency key returns same result)
+ * - success-rate of charges succeed (default 90%), the rest are declined
+ * - latency is uniform (min-ms..max-ms) or lognormal (median-ms, p99-ms)
+ * - optional brownouts: every brownout-every-seconds, for
+ *   brownout-duration-seconds, latency is multiplied and a share of calls
+ *   fail with PspUnavailableException
+ * - idempotent: the same key returns the same result (or joins the call in
+ *   flight) for dedup-ttl-seconds; at most dedup-max-entries keys are kept,
+ *   oldest first out
+ *
+ * Non-blocking: a call returns a future at once and a scheduler thread
+ * completes it when the simulated latency is up — no thread sleeps per call,
+ * so the stub can stand in for a PSP at load-test volumes.
  */
 @Service
 @Slf4j
 public class PspStubService {
 
-    private final Random random = new Random();
+    /**
+     * The PSP couldn't be reached or answered with an error — the charge
+     * outcome is unknown and the call may be retried with the same key.
+     */
+    public static class PspUnavailableException extends RuntimeException {
+        public PspUnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    // z-score of the 99th percentile of a standard normal
+    private static final double Z_99 = 2.326;
+
+    @Value("${app.psp.stub.success-rate:0.9}")
+    private double successRate;
+
+    @Value("${app.psp.stub.latency-model:uniform}")
+    private String latencyModel;
+
+    @Value("${app.psp.stub.min-ms:200}")
+    private long minMs;
+
+    @Value("${app.psp.stub.max-ms:1500}")
+    private long maxMs;
+
+    @Value("${app.psp.stub.median-ms:400}")
+    private double medianMs;
+
+    @Value("${app.psp.stub.p99-ms:2500}")
+    private double p99Ms;
+
+    @Value("${app.psp.stub.brownout-every-seconds:0}")
+    private long brownoutEverySeconds;
 
-    // In-memory store for idempotency (simulates PSP's dedup)
-    private final ConcurrentHashMap<String, Map<String, Object>> processedPayments = new ConcurrentHashMap<>();
+    @Value("${app.psp.stub.brownout-duration-seconds:30}")
+    private long brownoutDurationSeconds;
+
+    @Value("${app.psp.stub.brownout-latency-multiplier:5}")
+    private double brownoutLatencyMultiplier;
+
+    @Value("${app.psp.stub.brownout-error-rate:0.3}")
+    private double brownoutErrorRate;
+
+    @Value("${app.psp.stub.dedup-ttl-seconds:86400}")
+    private long dedupTtlSeconds;
+
+    @Value("${app.psp.stub.dedup-max-entries:100000}")
+    private int dedupMaxEntries;
+
+    private record Processed(CompletableFuture<Map<String, Object>> result, long expiresAtMillis) {
+    }
+
+    private record Expiry(String key, Processed entry) {
+    }
+
+    // Simulates the PSP's dedup; insertion order is expiry order (one TTL for all keys)
+    private final Map<String, Processed> processedPayments = new ConcurrentHashMap<>();
+    private final Queue<Expiry> expiryOrder = new ConcurrentLinkedQueue<>();
+
+    private final long startedAtMillis = System.currentTimeMillis();
+    private ScheduledThreadPoolExecutor scheduler;
+
+    @PostConstruct
+    void start() {
+        scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "psp-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
 
     /**
      * Process a payment through the "PSP".
-     * Returns a map with status and transaction ID.
+     * Completes with a map holding status and transaction ID, or
+     * exceptionally with PspUnavailableException.
      */
-    public Map<String, Object> processPayment(String idempotencyKey, BigDecimal amount, String currency) {
+    public CompletableFuture<Map<String, Object>> processPayment(String idempotencyKey, BigDecimal amount,
+                                                                 String currency) {
         // Idempotency check — if we've seen this key before, return same result
-        if (processedPayments.containsKey(idempotencyKey)) {
+        Processed existing = processedPayments.get(idempotencyKey);
+        if (existing != null && existing.expiresAtMillis() > System.currentTimeMillis()) {
             log.info("PSP Stub: Duplicate payment request with key {}. Returning cached result.", idempotencyKey);
-            return processedPayments.get(idempotencyKey);
+            return existing.result().copy();
         }
 
-        // Simulate network latency
-        try {
-            int delay = 200 + random.nextInt(1300); // 200ms to 1500ms
-            Thread.sleep(delay);
-            log.debug("PSP Stub: Simulated {}ms network delay", delay);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        Processed fresh = new Processed(new CompletableFuture<>(),
+                System.currentTimeMillis() + dedupTtlSeconds * 1000);
+        Processed current = processedPayments.merge(idempotencyKey, fresh,
+                (cached, candidate) -> cached.expiresAtMillis() > System.currentTimeMillis() ? cached : candidate);
+        if (current != fresh) {
+            return current.result().copy();
         }
+        expiryOrder.add(new Expiry(idempotencyKey, fresh));
+        if (processedPayments.size() > dedupMaxEntries) {
+            evict(System.currentTimeMillis());
+        }
+
+        boolean brownout = inBrownout();
+        long delay = sampleLatencyMs(brownout);
+        scheduler.schedule(() -> settle(idempotencyKey, fresh, amount, currency, brownout),
+                delay, TimeUnit.MILLISECONDS);
+        log.debug("PSP Stub: Simulated {}ms network delay{}", delay, brownout ? " (brownout)" : "");
+        // Callers get a copy, so a caller's timeout or cancel can't poison the cached result
+        return fresh.result().copy();
+    }
+
+    public int dedupSize() {
+        return processedPayments.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.psp.stub.dedup-sweep-interval-ms:60000}")
+    public void sweepExpired() {
+        evict(System.currentTimeMillis());
+    }
+
+    private void settle(String idempotencyKey, Processed entry, BigDecimal amount, String currency,
+                        boolean brownout) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
 
-        // Simulate 90% success rate
-        boolean success = random.nextInt(10) < 9;
+        if (brownout && random.nextDouble() < brownoutErrorRate) {
+            // Nothing was charged — forget the key so a retry is processed afresh
+            processedPayments.remove(idempotencyKey, entry);
+            log.info("PSP Stub: Payment ERROR for key {} (brownout)", idempotencyKey);
+            entry.result().completeExceptionally(new PspUnavailableException("PSP brownout — 503"));
+            return;
+        }
 
         Map<String, Object> result;
-        if (success) {
+        if (random.nextDouble() < successRate) {
             String pspTxnId = "psp_" + UUID.randomUUID().toString().substring(0, 12);
             result = Map.of(
                     "status", "SUCCESS",
@@ -69,9 +192,42 @@ public class PspStubService {
             );
             log.info("PSP Stub: Payment FAILED for key {}", idempotencyKey);
         }
+        entry.result().complete(result);
+    }
 
-        // Store for idempotency
-        processedPayments.put(idempotencyKey, result);
-        return result;
+    private long sampleLatencyMs(boolean brownout) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double latency;
+        if ("lognormal".equalsIgnoreCase(latencyModel)) {
+            // median = e^mu, p99 = e^(mu + 2.326 sigma)
+            double mu = Math.log(medianMs);
+            double sigma = Math.max(0, Math.log(p99Ms / medianMs) / Z_99);
+            latency = Math.exp(mu + sigma * random.nextGaussian());
+        } else {
+            latency = minMs + random.nextDouble() * Math.max(0, maxMs - minMs);
+        }
+        if (brownout) {
+            latency *= brownoutLatencyMultiplier;
+        }
+        return Math.max(0, Math.round(latency));
+    }
+
+    private boolean inBrownout() {
+        if (brownoutEverySeconds <= 0) {
+            return false;
+        }
+        long elapsedSeconds = (System.currentTimeMillis() - startedAtMillis) / 1000;
+        return elapsedSeconds % brownoutEverySeconds < brownoutDurationSeconds;
+    }
+
+    // Drop expired keys, then the oldest ones while over capacity
+    private void evict(long now) {
+        Expiry head;
+        while ((head = expiryOrder.peek()) != null
+                && (head.entry().expiresAtMillis() <= now || processedPayments.size() > dedupMaxEntries)) {
+            if (expiryOrder.remove(head)) {
+                processedPayments.remove(head.key(), head.entry());
+            }
+        }
     }
 }
@@ -0,0 +1,59 @@
+package com.gocomet.ridehailing.payout.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Payout ledger: what a driver earned in one settlement run. Written by
+ * SettlementJdbcRepository with batched upserts — one row per (run, driver),
+ * accumulated across the run's chunks.
+ */
+@Entity
+@Table(name = "driver_payouts", indexes = {
+        @Index(name = "idx_driver_payouts_run_driver", columnList = "run_id, driver_id", unique = true),
+        @Index(name = "idx_driver_payouts_driver", columnList = "driver_id, run_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DriverPayout {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "driver_payouts_seq")
+    @SequenceGenerator(name = "driver_payouts_seq", sequenceName = "driver_payouts_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "run_id", nullable = false)
+    private Long runId;
+
+    @Column(name = "driver_id", nullable = false)
+    private UUID driverId;
+
+    @Column(name = "trip_count", nullable = false)
+    private Integer tripCount;
+
+    @Column(name = "gross_amount", nullable = false, precision = 12, scale = 2)
+    private BigDecimal grossAmount;
+
+    @Column(name = "commission_amount", nullable = false, precision = 12, scale = 2)
+    private BigDecimal commissionAmount;
+
+    @Column(name = "net_amount", nullable = false, precision = 12, scale = 2)
+    private BigDecimal netAmount;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
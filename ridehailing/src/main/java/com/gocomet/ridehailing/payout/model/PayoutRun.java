@@ -0,0 +1,76 @@
+package com.gocomet.ridehailing.payout.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One settlement run: trips that ended before periodEnd (and after
+ * windowStart) and were paid are credited to their drivers.
+ *
+ * The checkpoint is the (end_time, id) of the last trip settled, advanced
+ * in the same transaction as each chunk — a run that dies resumes right
+ * after the last committed chunk.
+ */
+@Entity
+@Table(name = "payout_runs", indexes = {
+        @Index(name = "idx_payout_runs_period_end", columnList = "period_end", unique = true),
+        @Index(name = "idx_payout_runs_status", columnList = "status")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PayoutRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payout_runs_seq")
+    @SequenceGenerator(name = "payout_runs_seq", sequenceName = "payout_runs_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(name = "window_start", nullable = false)
+    private LocalDateTime windowStart;
+
+    @Column(name = "period_end", nullable = false)
+    private LocalDateTime periodEnd;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    @Builder.Default
+    private PayoutRunStatus status = PayoutRunStatus.RUNNING;
+
+    @Column(name = "checkpoint_end_time")
+    private LocalDateTime checkpointEndTime;
+
+    @Column(name = "checkpoint_trip_id")
+    private UUID checkpointTripId;
+
+    @Column(name = "trips_settled", nullable = false)
+    @Builder.Default
+    private Long tripsSettled = 0L;
+
+    // Totals in paise
+    @Column(name = "gross_paise", nullable = false)
+    @Builder.Default
+    private Long grossPaise = 0L;
+
+    @Column(name = "net_paise", nullable = false)
+    @Builder.Default
+    private Long netPaise = 0L;
+
+    @CreationTimestamp
+    @Column(name = "started_at", nullable = false, updatable = false)
+    private LocalDateTime startedAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,6 @@
+package com.gocomet.ridehailing.payout.model;
+
+public enum PayoutRunStatus {
+    RUNNING,
+    COMPLETED
+}
@@ -0,0 +1,27 @@
+package com.gocomet.ridehailing.payout.repository;
+
+import com.gocomet.ridehailing.payout.model.PayoutRun;
+import com.gocomet.ridehailing.payout.model.PayoutRunStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PayoutRunRepository extends JpaRepository<PayoutRun, Long> {
+    boolean existsByPeriodEnd(LocalDateTime periodEnd);
+
+    List<PayoutRun> findByStatusOrderByPeriodEnd(PayoutRunStatus status);
+
+    /**
+     * Lock a run for one chunk. Skips a run another instance is working on,
+     * so two settlement jobs never process the same run at once.
+     */
+    @Query(value = "SELECT * FROM payout_runs WHERE id = :id AND status = 'RUNNING' FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    Optional<PayoutRun> lockRunning(@Param("id") Long id);
+}
@@ -0,0 +1,98 @@
+package com.gocomet.ridehailing.payout.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Plain JDBC for the payout settlement job — the paths where JPA would
+ * load an entity per trip.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SettlementJdbcRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public interface TripRow {
+        void accept(UUID tripId, UUID driverId, LocalDateTime endTime, long amountPaise);
+    }
+
+    /**
+     * Completed, successfully paid, unsettled trips that ended before
+     * periodEnd, after the (endTime, tripId) checkpoint, in keyset order.
+     * Rows are fetched fetchSize at a time through a forward-only cursor and
+     * handed to the callback — never held as a list. Must run inside a
+     * transaction (Postgres only streams with autocommit off).
+     */
+    public void streamSettleable(LocalDateTime periodEnd, LocalDateTime afterEndTime, UUID afterTripId,
+                                 int limit, int fetchSize, TripRow rows) {
+        String sql = """
+                SELECT t.id, t.driver_id, t.end_time, CAST(ROUND(p.amount * 100) AS BIGINT) AS amount_paise
+                FROM trips t
+                JOIN payments p ON p.trip_id = t.id AND p.status = 'SUCCESS'
+                WHERE t.payout_run_id IS NULL
+                  AND t.status = 'COMPLETED'
+                  AND t.end_time < ?
+                  AND (t.end_time, t.id) > (?, ?)
+                ORDER BY t.end_time, t.id
+                LIMIT ?
+                """;
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            statement.setTimestamp(1, Timestamp.valueOf(periodEnd));
+            statement.setTimestamp(2, Timestamp.valueOf(afterEndTime));
+            statement.setObject(3, afterTripId);
+            statement.setInt(4, limit);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> rows.accept(
+                resultSet.getObject(1, UUID.class), resultSet.getObject(2, UUID.class),
+                resultSet.getTimestamp(3).toLocalDateTime(), resultSet.getLong(4)));
+    }
+
+    /**
+     * Add a chunk's earnings to the run's ledger rows — one batched upsert,
+     * one row per (run, driver) however many chunks credit the driver.
+     * Each args row: run_id, driver_id, trip_count, gross, commission, net.
+     */
+    public void upsertPayouts(List<Object[]> payouts) {
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO driver_payouts (id, run_id, driver_id, trip_count, gross_amount, commission_amount,
+                                            net_amount, created_at, updated_at)
+                VALUES (nextval('driver_payouts_seq'), ?, ?, ?, ?, ?, ?, now(), now())
+                ON CONFLICT (run_id, driver_id) DO UPDATE
+                SET trip_count = driver_payouts.trip_count + EXCLUDED.trip_count,
+                    gross_amount = driver_payouts.gross_amount + EXCLUDED.gross_amount,
+                    commission_amount = driver_payouts.commission_amount + EXCLUDED.commission_amount,
+                    net_amount = driver_payouts.net_amount + EXCLUDED.net_amount,
+                    updated_at = now()
+                """, payouts);
+    }
+
+    /**
+     * Mark a chunk's trips settled by the run in one statement. Returns the
+     * number of trips marked — fewer than tripIds.length means some were
+     * settled concurrently.
+     */
+    public int markSettled(long runId, UUID[] tripIds) {
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE trips SET payout_run_id = ? WHERE id = ANY(?) AND payout_run_id IS NULL");
+            Array ids = connection.createArrayOf("uuid", tripIds);
+            statement.setLong(1, runId);
+            statement.setArray(2, ids);
+            return statement;
+        });
+    }
+}
@@ -0,0 +1,102 @@
+package com.gocomet.ridehailing.payout.service;
+
+import java.util.UUID;
+
+/**
+ * Per-driver trip count and earnings for one settlement chunk.
+ *
+ * Open addressing over parallel primitive arrays keyed by the driver id's
+ * two longs — no UUID, boxed amount or map node is kept per driver, so a
+ * chunk of any size costs a few flat arrays. Amounts are in paise.
+ */
+final class DriverEarnings {
+
+    interface Visitor {
+        void visit(UUID driverId, int trips, long paise);
+    }
+
+    private long[] msb;
+    private long[] lsb;
+    private long[] paise;
+    private int[] trips;
+    private boolean[] used;
+    private int size;
+
+    DriverEarnings(int expectedDrivers) {
+        allocate(Integer.highestOneBit(Math.max(16, expectedDrivers * 2 - 1)) << 1);
+    }
+
+    void add(UUID driverId, long amountPaise) {
+        if ((size + 1) * 2 > used.length) {
+            grow();
+        }
+        int slot = slotOf(driverId.getMostSignificantBits(), driverId.getLeastSignificantBits());
+        if (!used[slot]) {
+            used[slot] = true;
+            msb[slot] = driverId.getMostSignificantBits();
+            lsb[slot] = driverId.getLeastSignificantBits();
+            size++;
+        }
+        trips[slot]++;
+        paise[slot] += amountPaise;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                visitor.visit(new UUID(msb[i], lsb[i]), trips[i], paise[i]);
+            }
+        }
+    }
+
+    // Linear probing; table is at most half full
+    private int slotOf(long hi, long lo) {
+        int mask = used.length - 1;
+        int slot = (int) mix(hi ^ Long.rotateLeft(lo, 32)) & mask;
+        while (used[slot] && (msb[slot] != hi || lsb[slot] != lo)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldMsb = msb;
+        long[] oldLsb = lsb;
+        long[] oldPaise = paise;
+        int[] oldTrips = trips;
+        boolean[] oldUsed = used;
+        allocate(oldUsed.length << 1);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                int slot = slotOf(oldMsb[i], oldLsb[i]);
+                used[slot] = true;
+                msb[slot] = oldMsb[i];
+                lsb[slot] = oldLsb[i];
+                paise[slot] = oldPaise[i];
+                trips[slot] = oldTrips[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        msb = new long[capacity];
+        lsb = new long[capacity];
+        paise = new long[capacity];
+        trips = new int[capacity];
+        used = new boolean[capacity];
+    }
+
+    // Murmur3 finalizer — spreads UUID bits over the low bits used for the slot
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,187 @@
+package com.gocomet.ridehailing.payout.service;
+
+import com.gocomet.ridehailing.payout.model.PayoutRun;
+import com.gocomet.ridehailing.payout.model.PayoutRunStatus;
+import com.gocomet.ridehailing.payout.repository.PayoutRunRepository;
+import com.gocomet.ridehailing.payout.repository.SettlementJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Settles completed, paid trips to their drivers.
+ *
+ * Every period (period-hours, which should divide 24) a payout run is opened
+ * for the trips that ended before the period's end. A run works in chunks
+ * of chunk-size trips, one short transaction each:
+ *
+ *   1. lock the run row (FOR UPDATE SKIP LOCKED — one instance per run)
+ *   2. stream the next trips after the run's checkpoint in (end_time, id)
+ *      order through a forward-only cursor, summing count and paise per
+ *      driver in a DriverEarnings table
+ *   3. upsert the drivers' ledger rows in one JDBC batch
+ *   4. mark the chunk's trips settled in one UPDATE … WHERE id = ANY(?)
+ *   5. advance the checkpoint and run totals
+ *
+ * Memory is bounded by the chunk, not by trip volume. A run that dies
+ * mid-way resumes after its last committed chunk on the next tick, and a
+ * trip can't be settled twice: it is only picked while payout_run_id is
+ * null, and the chunk rolls back if any of its trips was marked meanwhile.
+ *
+ * Trips paid late are picked up by the next run; a run only looks back
+ * lookback-hours, so trips never paid (e.g. cash) don't slow every run down.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PayoutSettlementJob {
+
+    private static final UUID MIN_UUID = new UUID(0, 0);
+
+    private final PayoutRunRepository payoutRunRepository;
+    private final SettlementJdbcRepository settlementJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.payouts.period-hours:24}")
+    private int periodHours;
+
+    @Value("${app.payouts.lookback-hours:168}")
+    private long lookbackHours;
+
+    @Value("${app.payouts.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${app.payouts.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${app.payouts.commission-rate:0.20}")
+    private BigDecimal commissionRate;
+
+    @Scheduled(cron = "${app.payouts.cron:0 15 * * * *}")
+    public void settle() {
+        try {
+            openDueRun();
+            for (PayoutRun run : payoutRunRepository.findByStatusOrderByPeriodEnd(PayoutRunStatus.RUNNING)) {
+                drain(run.getId());
+            }
+        } catch (Exception e) {
+            log.error("Payout settlement failed — resumes from the last checkpoint next tick", e);
+        }
+    }
+
+    private void openDueRun() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime periodEnd = now.truncatedTo(ChronoUnit.HOURS).minusHours(now.getHour() % periodHours);
+        if (payoutRunRepository.existsByPeriodEnd(periodEnd)) {
+            return;
+        }
+        try {
+            payoutRunRepository.save(PayoutRun.builder()
+                    .windowStart(periodEnd.minusHours(lookbackHours))
+                    .periodEnd(periodEnd)
+                    .build());
+            log.info("💸 Opened payout run for trips ending before {}", periodEnd);
+        } catch (DataIntegrityViolationException e) {
+            // Another instance opened it
+        }
+    }
+
+    private void drain(Long runId) {
+        Boolean more;
+        do {
+            more = transactionTemplate.execute(status -> settleChunk(runId));
+        } while (Boolean.TRUE.equals(more));
+    }
+
+    /**
+     * Settle the next chunk of a run. Returns true if there may be more,
+     * false once the run completed, null if another instance holds it.
+     */
+    private Boolean settleChunk(Long runId) {
+        PayoutRun run = payoutRunRepository.lockRunning(runId).orElse(null);
+        if (run == null) {
+            return null;
+        }
+
+        LocalDateTime afterEndTime = run.getCheckpointEndTime() != null
+                ? run.getCheckpointEndTime() : run.getWindowStart();
+        UUID afterTripId = run.getCheckpointTripId() != null ? run.getCheckpointTripId() : MIN_UUID;
+
+        DriverEarnings earnings = new DriverEarnings(Math.min(chunkSize, 1024));
+        UUID[] tripIds = new UUID[chunkSize];
+        int[] fetched = new int[1];
+        int[] count = new int[1];
+        LocalDateTime[] lastEndTime = new LocalDateTime[1];
+
+        settlementJdbcRepository.streamSettleable(run.getPeriodEnd(), afterEndTime, afterTripId,
+                chunkSize, fetchSize, (tripId, driverId, endTime, amountPaise) -> {
+                    fetched[0]++;
+                    // A trip with two SUCCESS payments comes twice in a row — credit it once
+                    if (count[0] > 0 && tripIds[count[0] - 1].equals(tripId)) {
+                        return;
+                    }
+                    earnings.add(driverId, amountPaise);
+                    tripIds[count[0]++] = tripId;
+                    lastEndTime[0] = endTime;
+                });
+
+        int settled = count[0];
+        if (settled > 0) {
+            long[] totals = credit(run.getId(), earnings);
+            int marked = settlementJdbcRepository.markSettled(run.getId(), Arrays.copyOf(tripIds, settled));
+            if (marked != settled) {
+                throw new IllegalStateException("Payout run " + run.getId() + ": " + (settled - marked)
+                        + " trips were settled concurrently — chunk rolled back");
+            }
+            run.setCheckpointEndTime(lastEndTime[0]);
+            run.setCheckpointTripId(tripIds[settled - 1]);
+            run.setTripsSettled(run.getTripsSettled() + settled);
+            run.setGrossPaise(run.getGrossPaise() + totals[0]);
+            run.setNetPaise(run.getNetPaise() + totals[1]);
+        }
+
+        // Fewer rows than the limit: nothing left after the checkpoint
+        if (fetched[0] < chunkSize) {
+            run.setStatus(PayoutRunStatus.COMPLETED);
+            run.setCompletedAt(LocalDateTime.now());
+            log.info("💸 Payout run {} completed — {} trips settled, gross {} net {}", run.getId(),
+                    run.getTripsSettled(), rupees(run.getGrossPaise()), rupees(run.getNetPaise()));
+            return false;
+        }
+        return true;
+    }
+
+    // Write the chunk's ledger rows; returns {gross, net} in paise
+    private long[] credit(long runId, DriverEarnings earnings) {
+        List<Object[]> payouts = new ArrayList<>(earnings.size());
+        long[] totals = new long[2];
+        earnings.forEach((driverId, trips, grossPaise) -> {
+            long commissionPaise = BigDecimal.valueOf(grossPaise).multiply(commissionRate)
+                    .setScale(0, RoundingMode.HALF_UP).longValueExact();
+            long netPaise = grossPaise - commissionPaise;
+            payouts.add(new Object[]{runId, driverId, trips, rupees(grossPaise), rupees(commissionPaise),
+                    rupees(netPaise)});
+            totals[0] += grossPaise;
+            totals[1] += netPaise;
+        });
+        settlementJdbcRepository.upsertPayouts(payouts);
+        return totals;
+    }
+
+    private static BigDecimal rupees(long paise) {
+        return BigDecimal.valueOf(paise, 2);
+    }
+}
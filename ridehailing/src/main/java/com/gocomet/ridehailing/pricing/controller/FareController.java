@@ -0,0 +1,25 @@
+package com.gocomet.ridehailing.pricing.controller;
+
+import com.gocomet.ridehailing.pricing.dto.FareQuoteRequest;
+import com.gocomet.ridehailing.pricing.dto.FareQuoteResponse;
+import com.gocomet.ridehailing.pricing.service.FareQuoteService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/v1/fares")
+@RequiredArgsConstructor
+public class FareController {
+
+    private final FareQuoteService fareQuoteService;
+
+    /**
+     * POST /v1/fares/quote — Price a trip and return a signed quote token
+     */
+    @PostMapping("/quote")
+    public ResponseEntity<FareQuoteResponse> quote(@Valid @RequestBody FareQuoteRequest request) {
+        return ResponseEntity.ok(fareQuoteService.quote(request));
+    }
+}
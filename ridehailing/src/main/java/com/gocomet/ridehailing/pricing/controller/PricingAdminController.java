@@ -0,0 +1,51 @@
+package com.gocomet.ridehailing.pricing.controller;
+
+import com.gocomet.ridehailing.pricing.service.PricingTable;
+import com.gocomet.ridehailing.pricing.service.PricingTableLoader;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/v1/admin/pricing")
+@RequiredArgsConstructor
+public class PricingAdminController {
+
+    private final PricingTable pricingTable;
+    private final PricingTableLoader pricingTableLoader;
+
+    /**
+     * GET /v1/admin/pricing — Pricing table currently in force
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getPricing() {
+        Map<String, Object> body = summary(pricingTable.current());
+        body.put("table", pricingTableLoader.getLoadedConfig());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * POST /v1/admin/pricing/reload — Re-read the pricing file and swap it in
+     */
+    @PostMapping("/reload")
+    public ResponseEntity<Map<String, Object>> reload() {
+        return ResponseEntity.ok(summary(pricingTableLoader.reload()));
+    }
+
+    private Map<String, Object> summary(PricingTable.Snapshot snapshot) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("version", snapshot.version());
+        body.put("loadedAt", snapshot.loadedAt().toString());
+        body.put("source", snapshot.source());
+        body.put("cities", Arrays.stream(snapshot.cities()).map(PricingTable.CityPricing::city).toList());
+        body.put("fallback", snapshot.fallback().city());
+        return body;
+    }
+}
@@ -0,0 +1,59 @@
+package com.gocomet.ridehailing.pricing.controller;
+
+import com.gocomet.ridehailing.common.geo.CellId;
+import com.gocomet.ridehailing.pricing.dto.DemandForecastResponse;
+import com.gocomet.ridehailing.pricing.dto.SurgeHeatmapResponse;
+import com.gocomet.ridehailing.pricing.service.DemandForecaster;
+import com.gocomet.ridehailing.pricing.service.SurgeHeatmapService;
+import com.gocomet.ridehailing.pricing.service.SurgePricingService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/v1/surge")
+@RequiredArgsConstructor
+public class SurgeController {
+
+    private final SurgeHeatmapService surgeHeatmapService;
+    private final SurgePricingService surgePricingService;
+    private final DemandForecaster demandForecaster;
+
+    /**
+     * GET /v1/surge/heatmap?bbox=minLng,minLat,maxLng,maxLat — Surging cells in the box
+     */
+    @GetMapping("/heatmap")
+    public ResponseEntity<SurgeHeatmapResponse> getHeatmap(@RequestParam String bbox) {
+        return ResponseEntity.ok(surgeHeatmapService.getHeatmap(bbox));
+    }
+
+    /**
+     * GET /v1/surge/forecast?lat=&lng= — Forecast demand for the cell containing the point
+     */
+    @GetMapping("/forecast")
+    public ResponseEntity<DemandForecastResponse> getForecast(@RequestParam double lat, @RequestParam double lng) {
+        long cell = surgePricingService.cellOf(lat, lng);
+        int[] horizons = DemandForecaster.HORIZONS_MINUTES;
+        double[] rates = new double[horizons.length];
+        for (int i = 0; i < horizons.length; i++) {
+            rates[i] = demandForecaster.forecastPerMinute(cell, horizons[i]);
+        }
+        double[] wape = demandForecaster.wape();
+        Double[] scoredWape = new Double[wape.length];
+        for (int i = 0; i < wape.length; i++) {
+            scoredWape[i] = Double.isNaN(wape[i]) ? null : wape[i];
+        }
+
+        return ResponseEntity.ok(DemandForecastResponse.builder()
+                .cell(CellId.toToken(cell))
+                .horizonsMinutes(horizons.clone())
+                .requestsPerMinute(rates)
+                .wape(scoredWape)
+                .scoredMinutes(demandForecaster.scoredMinutes())
+                .trackedCells(demandForecaster.trackedCells())
+                .build());
+    }
+}
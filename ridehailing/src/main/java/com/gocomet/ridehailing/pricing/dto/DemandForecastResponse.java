@@ -0,0 +1,22 @@
+package com.gocomet.ridehailing.pricing.dto;
+
+import lombok.*;
+
+/**
+ * Demand forecast for one cell. All arrays are index-aligned with horizonsMinutes.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DemandForecastResponse {
+
+    private String cell;
+    private int[] horizonsMinutes;
+    private double[] requestsPerMinute;
+    // Backtest over all cells: sum |forecast - actual| / sum actual (null until scored)
+    private Double[] wape;
+    private long[] scoredMinutes;
+    private int trackedCells;
+}
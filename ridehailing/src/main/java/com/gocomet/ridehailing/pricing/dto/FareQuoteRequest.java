@@ -0,0 +1,28 @@
+package com.gocomet.ridehailing.pricing.dto;
+
+import com.gocomet.ridehailing.driver.model.VehicleType;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FareQuoteRequest {
+
+    @NotNull(message = "Pickup latitude is required")
+    private Double pickupLat;
+
+    @NotNull(message = "Pickup longitude is required")
+    private Double pickupLng;
+
+    @NotNull(message = "Destination latitude is required")
+    private Double destinationLat;
+
+    @NotNull(message = "Destination longitude is required")
+    private Double destinationLng;
+
+    @NotNull(message = "Vehicle tier is required")
+    private VehicleType vehicleTier;
+}
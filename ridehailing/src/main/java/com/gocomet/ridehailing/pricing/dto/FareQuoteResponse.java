@@ -0,0 +1,24 @@
+package com.gocomet.ridehailing.pricing.dto;
+
+import com.gocomet.ridehailing.driver.model.VehicleType;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FareQuoteResponse {
+
+    private VehicleType vehicleTier;
+    private BigDecimal distanceKm;
+    private BigDecimal surgeMultiplier;
+    private BigDecimal estimatedFare;
+    private String currency;
+    // Pass back as RideRequest.quoteToken to book at this price
+    private String quoteToken;
+    private Instant expiresAt;
+}
@@ -0,0 +1,50 @@
+package com.gocomet.ridehailing.pricing.dto;
+
+import com.gocomet.ridehailing.driver.model.VehicleType;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pricing table file format (JSON). Amounts are in rupees; they are converted
+ * to paise once, when the table is loaded.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PricingConfig {
+
+    // Matched in order; a city without a bbox is the fallback and must come last
+    private List<City> cities;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class City {
+        private String city;
+        // minLng, minLat, maxLng, maxLat
+        private double[] bbox;
+        // Used to estimate trip minutes for quotes
+        private double estimateSpeedKmph;
+        private Map<VehicleType, TierRates> tiers;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class TierRates {
+        private BigDecimal baseFare;
+        private BigDecimal perKm;
+        private BigDecimal perMinute;
+        private BigDecimal minimumFare;
+        private BigDecimal surgeCap;
+    }
+}
@@ -0,0 +1,26 @@
+package com.gocomet.ridehailing.pricing.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Surge heatmap snapshot in column form — one entry per surging cell, index-aligned
+ * across cells / lats / lngs / multipliers. Cells not listed are at 1.0×.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SurgeHeatmapResponse {
+
+    private long version;
+    private int cellLevel;
+    // Region tokens covering the bbox — subscribe to /topic/surge.{region} for deltas
+    private List<String> regions;
+    private List<String> cells;
+    private double[] lats;
+    private double[] lngs;
+    private double[] multipliers;
+}
@@ -0,0 +1,71 @@
+package com.gocomet.ridehailing.pricing.event;
+
+import com.gocomet.ridehailing.common.event.RideEvent;
+import com.gocomet.ridehailing.pricing.service.DemandForecaster;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.AbstractConsumerSeekAware;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Feeds REQUESTED ride events into the demand forecaster.
+ *
+ * Consumer group: "surge-forecaster-{app.instance-id}" — one group per
+ * instance, so every node sees every partition (the forecast is held in
+ * memory and the surge engine may run on any node). The id is stable, so a
+ * restart reuses its group instead of leaving one behind. On its first
+ * assignment the consumer seeks to the beginning, committed offsets or not:
+ * a starting node replays the retained topic, which warms the model and
+ * backtests it against the recorded history before live traffic arrives.
+ * Later rebalances resume from the committed offsets, so nothing is counted
+ * twice.
+ *
+ * The replay reads partitions batch by batch, not in event-time order, so
+ * each event is passed on with its partition and the forecaster keeps a
+ * watermark per assigned partition (see DemandForecaster).
+ */
+@Service
+@RequiredArgsConstructor
+public class DemandForecastConsumer extends AbstractConsumerSeekAware {
+
+    private final DemandForecaster demandForecaster;
+
+    private final AtomicBoolean replayed = new AtomicBoolean();
+
+    @KafkaListener(topics = "${app.kafka.topics.ride-events}", groupId = "surge-forecaster-${app.instance-id}")
+    public void consume(
+            @Payload RideEvent event,
+            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition) {
+        // Events published before pickup coordinates were added carry none
+        if (event.getEventType() != RideEvent.EventType.REQUESTED
+                || event.getPickupLat() == null || event.getPickupLng() == null
+                || event.getTimestamp() == null) {
+            return;
+        }
+        demandForecaster.observe(event.getPickupLat(), event.getPickupLng(), event.getTimestamp().toEpochMilli(),
+                partition);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        super.onPartitionsAssigned(assignments, callback);
+        demandForecaster.partitionsAssigned(assignments.keySet().stream().map(TopicPartition::partition).toList());
+        if (replayed.compareAndSet(false, true)) {
+            callback.seekToBeginning(assignments.keySet());
+        }
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        super.onPartitionsRevoked(partitions);
+        demandForecaster.partitionsRevoked(partitions.stream().map(TopicPartition::partition).toList());
+    }
+}
@@ -0,0 +1,198 @@
+package com.gocomet.ridehailing.pricing.service;
+
+import com.gocomet.ridehailing.common.geo.CellId;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sliding-window ride demand counter per geo cell (see CellId).
+ *
+ * Each cell is a Redis hash of fixed-width time buckets (bucket index → count).
+ * A single scripted call increments the current bucket, drops buckets that fell
+ * out of the window and returns the rolling sum — so a busy cell decays as soon
+ * as requests slow down instead of having its TTL pushed forward on every hit.
+ *
+ * Memory per cell is bounded by windowSeconds / bucketSeconds hash fields.
+ * Bucket indices are derived from the Redis server clock (TIME) so every app
+ * instance agrees on bucket boundaries.
+ *
+ * Every recorded cell is also stamped into the "demand:active" sorted set
+ * (score = last request time) so the surge engine can enumerate the cells
+ * that currently have demand without scanning keys.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DemandCounterService {
+
+    private static final String DEMAND_PREFIX = "demand:";
+    private static final String ACTIVE_CELLS_KEY = "demand:active";
+
+    // KEYS[1] = demand hash, KEYS[2] = active-cell zset,
+    // ARGV[1] = bucket seconds, ARGV[2] = window buckets, ARGV[3] = increment, ARGV[4] = cell
+    private static final RedisScript<Long> RECORD_SCRIPT = new DefaultRedisScript<>("""
+            local now = redis.call('TIME')
+            local bucketSeconds = tonumber(ARGV[1])
+            local windowBuckets = tonumber(ARGV[2])
+            local current = math.floor(tonumber(now[1]) / bucketSeconds)
+            local oldest = current - windowBuckets + 1
+            redis.call('HINCRBY', KEYS[1], current, tonumber(ARGV[3]))
+            local fields = redis.call('HGETALL', KEYS[1])
+            local total = 0
+            for i = 1, #fields, 2 do
+                if tonumber(fields[i]) < oldest then
+                    redis.call('HDEL', KEYS[1], fields[i])
+                else
+                    total = total + tonumber(fields[i + 1])
+                end
+            end
+            redis.call('EXPIRE', KEYS[1], windowBuckets * bucketSeconds)
+            redis.call('ZADD', KEYS[2], tonumber(now[1]), ARGV[4])
+            return total
+            """, Long.class);
+
+    // Read-only variant: sums buckets inside the window without touching the hash
+    private static final RedisScript<Long> COUNT_SCRIPT = new DefaultRedisScript<>("""
+            local now = redis.call('TIME')
+            local bucketSeconds = tonumber(ARGV[1])
+            local windowBuckets = tonumber(ARGV[2])
+            local oldest = math.floor(tonumber(now[1]) / bucketSeconds) - windowBuckets + 1
+            local fields = redis.call('HGETALL', KEYS[1])
+            local total = 0
+            for i = 1, #fields, 2 do
+                if tonumber(fields[i]) >= oldest then
+                    total = total + tonumber(fields[i + 1])
+                end
+            end
+            return total
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${app.surge.demand-window-seconds:300}")
+    private int windowSeconds;
+
+    @Value("${app.surge.demand-bucket-seconds:10}")
+    private int bucketSeconds;
+
+    /**
+     * Record one ride request in the cell and return the number of requests
+     * seen in the last window (including this one). One Redis round trip.
+     */
+    public long record(long cell) {
+        String token = CellId.toToken(cell);
+        Long total = redisTemplate.execute(RECORD_SCRIPT, List.of(DEMAND_PREFIX + token, ACTIVE_CELLS_KEY),
+                String.valueOf(bucketSeconds), String.valueOf(windowBuckets()), "1", token);
+        long count = total != null ? total : 0;
+        log.debug("Demand for cell {}: {} in last {}s", token, count, windowSeconds);
+        return count;
+    }
+
+    /**
+     * Number of ride requests in the cell during the last window.
+     */
+    public long count(long cell) {
+        Long total = redisTemplate.execute(COUNT_SCRIPT, List.of(DEMAND_PREFIX + CellId.toToken(cell)),
+                String.valueOf(bucketSeconds), String.valueOf(windowBuckets()));
+        return total != null ? total : 0;
+    }
+
+    /**
+     * Windowed request counts for many cells in one pipelined round trip.
+     * Result order matches the input order.
+     */
+    public long[] countAll(long[] cells) {
+        long[] counts = new long[cells.length];
+        if (cells.length == 0) {
+            return counts;
+        }
+
+        List<Object> results;
+        try {
+            results = pipelineCount(cells, true);
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            // Script cache flushed (restart, failover) — EVAL once, which loads it again
+            log.debug("COUNT_SCRIPT not cached on the server, falling back to EVAL");
+            results = pipelineCount(cells, false);
+        }
+
+        for (int i = 0; i < counts.length; i++) {
+            Object result = results.get(i);
+            counts[i] = result instanceof Number n ? n.longValue() : 0;
+        }
+        return counts;
+    }
+
+    // One script call per cell; by SHA1 ships 40 bytes per cell instead of the script body
+    private List<Object> pipelineCount(long[] cells, boolean bySha) {
+        byte[] script = (bySha ? COUNT_SCRIPT.getSha1() : COUNT_SCRIPT.getScriptAsString())
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] bucketArg = String.valueOf(bucketSeconds).getBytes(StandardCharsets.UTF_8);
+        byte[] windowArg = String.valueOf(windowBuckets()).getBytes(StandardCharsets.UTF_8);
+
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (long cell : cells) {
+                byte[] key = (DEMAND_PREFIX + CellId.toToken(cell)).getBytes(StandardCharsets.UTF_8);
+                if (bySha) {
+                    connection.scriptingCommands().evalSha(script, ReturnType.INTEGER, 1, key, bucketArg, windowArg);
+                } else {
+                    connection.scriptingCommands().eval(script, ReturnType.INTEGER, 1, key, bucketArg, windowArg);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cells that received at least one request during the last window, sorted.
+     * Cells that went quiet are pruned from the index as a side effect.
+     */
+    public long[] activeCells() {
+        long cutoff = redisServerSeconds() - windowSeconds;
+        redisTemplate.opsForZSet().removeRangeByScore(ACTIVE_CELLS_KEY, Double.NEGATIVE_INFINITY, cutoff);
+        Set<String> tokens = redisTemplate.opsForZSet().range(ACTIVE_CELLS_KEY, 0, -1);
+        if (tokens == null) {
+            return new long[0];
+        }
+        return tokens.stream()
+                .mapToLong(CellId::fromToken)
+                .sorted()
+                .toArray();
+    }
+
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    private long redisServerSeconds() {
+        Long millis = redisTemplate.execute((RedisCallback<Long>) connection -> connection.serverCommands().time());
+        return (millis != null ? millis : System.currentTimeMillis()) / 1000;
+    }
+
+    private int windowBuckets() {
+        return Math.max(1, windowSeconds / bucketSeconds);
+    }
+}
@@ -0,0 +1,396 @@
+package com.gocomet.ridehailing.pricing.service;
+
+import com.gocomet.ridehailing.common.geo.CellId;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Short-term ride demand forecast per geo cell (see CellId).
+ *
+ * Fed with REQUESTED events from the "ride-events" stream, binned into
+ * one-minute buckets by event time. The stream is partitioned, and a replay
+ * reads one partition's batch before the next, so events don't arrive in
+ * event-time order. A minute therefore only closes once the slowest live
+ * partition has moved past it, and never more than allowed-lateness minutes
+ * behind the newest event. Events for an already closed minute are dropped,
+ * not counted in a later one. When a minute closes, three EWMAs of the
+ * per-minute count (spans 5, 10 and 15 minutes) are updated. Their spread
+ * gives a trend: a short EWMA above the long one means demand is rising.
+ * The forecast for h minutes ahead is the EWMA mean extrapolated along
+ * that trend (least squares over the three (lag, value) points).
+ *
+ * State lives in flat primitive arrays indexed by a per-cell slot — a few
+ * hundred bytes per cell, no per-event allocation. Cells that decay to zero
+ * are recycled by the minute sweep.
+ *
+ * Accuracy is measured online: every forecast is remembered until its target
+ * minute closes and then scored against the actual count. The result is
+ * reported as WAPE (sum |forecast - actual| / sum actual) per horizon.
+ */
+@Service
+@Slf4j
+public class DemandForecaster {
+
+    public static final int[] HORIZONS_MINUTES = {5, 10, 15};
+
+    private static final int[] SPANS_MINUTES = {5, 10, 15};
+    private static final int MODELS = SPANS_MINUTES.length;
+    private static final int HORIZONS = HORIZONS_MINUTES.length;
+    // Must exceed the longest horizon so a forecast survives until it is scored,
+    // and the allowed lateness so every open minute has its own pending bin
+    private static final int RING = 16;
+    // After this many empty minutes every EWMA is ~0 — jump instead of looping
+    private static final int MAX_CATCH_UP_MINUTES = 120;
+    private static final double IDLE_EPSILON = 0.01;
+    // A partition with no events for this long no longer holds minutes open
+    private static final long IDLE_PARTITION_MILLIS = 60_000L;
+
+    private static final double[] ALPHAS = new double[MODELS];
+    // Centre-of-mass lag of each EWMA, negated: x coordinate for the trend fit
+    private static final double[] LAG_X = new double[MODELS];
+    private static final double LAG_X_MEAN;
+    private static final double LAG_X_VARIANCE;
+
+    static {
+        double sum = 0;
+        for (int k = 0; k < MODELS; k++) {
+            ALPHAS[k] = 2.0 / (SPANS_MINUTES[k] + 1);
+            LAG_X[k] = -(SPANS_MINUTES[k] - 1) / 2.0;
+            sum += LAG_X[k];
+        }
+        LAG_X_MEAN = sum / MODELS;
+        double variance = 0;
+        for (int k = 0; k < MODELS; k++) {
+            variance += (LAG_X[k] - LAG_X_MEAN) * (LAG_X[k] - LAG_X_MEAN);
+        }
+        LAG_X_VARIANCE = variance;
+    }
+
+    @Value("${app.surge.cell-level:15}")
+    private int cellLevel;
+
+    @Value("${app.surge.forecast.max-cells:50000}")
+    private int maxCells;
+
+    // How far behind the newest event a minute stays open for stragglers; capped at RING - 1
+    @Value("${app.surge.forecast.allowed-lateness-minutes:5}")
+    private int allowedLatenessMinutes;
+
+    private final Map<Long, Integer> slots = new HashMap<>();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private int capacity = 0;
+    private int used = 0;
+
+    private long[] cellOfSlot = new long[0];
+    private long[] closedThrough = new long[0];       // last closed minute, Long.MIN_VALUE if the slot is free
+    private int[] pending = new int[0];               // slot * RING + minute % RING, minutes not yet closed
+    private double[] ewma = new double[0];            // slot * MODELS + model
+    private double[] issuedForecast = new double[0];  // (slot * HORIZONS + horizon) * RING + minute % RING
+    private long[] issuedFor = new long[0];           // target minute of each issued forecast, -1 if none
+
+    private final double[] absoluteError = new double[HORIZONS];
+    private final double[] actualTotal = new double[HORIZONS];
+    private final long[] scoredMinutes = new long[HORIZONS];
+
+    // Per assigned partition: {highest event minute seen, wall-clock millis of its last event}
+    private final Map<Integer, long[]> partitionWatermarks = new HashMap<>();
+    // Highest event minute seen on any partition
+    private long watermarkMinute = Long.MIN_VALUE;
+    // Every minute up to this one is closed (lazily, per cell); later events for it are dropped
+    private long closedMinute = Long.MIN_VALUE;
+    private long lastObservedAtMillis = 0;
+    private long droppedLate = 0;
+    private boolean full = false;
+
+    /**
+     * Count one ride request at the pickup point, binned by the event's own
+     * time. Events for a minute that has already closed are dropped.
+     */
+    public synchronized void observe(double lat, double lng, long eventTimeMillis, int partition) {
+        long minute = Math.floorDiv(eventTimeMillis, 60_000L);
+        long now = System.currentTimeMillis();
+        long[] mark = partitionWatermarks.computeIfAbsent(partition, p -> new long[]{Long.MIN_VALUE, now});
+        mark[0] = Math.max(mark[0], minute);
+        mark[1] = now;
+        watermarkMinute = Math.max(watermarkMinute, minute);
+        lastObservedAtMillis = now;
+        updateClosedMinute(now);
+
+        if (minute <= closedMinute) {
+            droppedLate++;
+            return;
+        }
+        int slot = slotFor(CellId.of(lat, lng, cellLevel));
+        if (slot < 0) {
+            return;
+        }
+        advance(slot, closedMinute);
+        pending[slot * RING + (int) Math.floorMod(minute, (long) RING)]++;
+    }
+
+    /**
+     * Track newly assigned partitions. Until one delivers its first event (or
+     * goes idle) minutes stay open for the full allowed lateness.
+     */
+    public synchronized void partitionsAssigned(Collection<Integer> partitions) {
+        long now = System.currentTimeMillis();
+        for (Integer partition : partitions) {
+            partitionWatermarks.putIfAbsent(partition, new long[]{Long.MIN_VALUE, now});
+        }
+    }
+
+    public synchronized void partitionsRevoked(Collection<Integer> partitions) {
+        partitions.forEach(partitionWatermarks::remove);
+    }
+
+    /**
+     * Forecast requests per minute in the cell, {@code horizonMinutes} from now.
+     */
+    public synchronized double forecastPerMinute(long cell, int horizonMinutes) {
+        Integer slot = slots.get(cell);
+        return slot == null ? 0 : rate(slot, horizonMinutes);
+    }
+
+    /**
+     * Expected requests over a window of {@code windowMinutes} centred
+     * {@code horizonMinutes} ahead — comparable with the sliding-window counts
+     * from DemandCounterService. Result order matches the input order.
+     */
+    public synchronized double[] forecastWindowCounts(long[] cells, int horizonMinutes, int windowMinutes) {
+        double[] counts = new double[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            Integer slot = slots.get(cells[i]);
+            if (slot != null) {
+                counts[i] = rate(slot, horizonMinutes) * windowMinutes;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Backtest WAPE per horizon (same order as HORIZONS_MINUTES); NaN until scored.
+     */
+    public synchronized double[] wape() {
+        double[] wape = new double[HORIZONS];
+        for (int h = 0; h < HORIZONS; h++) {
+            wape[h] = actualTotal[h] > 0 ? absoluteError[h] / actualTotal[h] : Double.NaN;
+        }
+        return wape;
+    }
+
+    public synchronized long[] scoredMinutes() {
+        return scoredMinutes.clone();
+    }
+
+    public synchronized int trackedCells() {
+        return used;
+    }
+
+    /**
+     * Close every closable minute in every cell and recycle idle cells. If
+     * the stream has gone quiet, wall-clock time moves the watermark instead
+     * so forecasts still decay.
+     */
+    @Scheduled(fixedDelayString = "${app.surge.forecast.sweep-interval-ms:60000}")
+    public synchronized void sweep() {
+        long now = System.currentTimeMillis();
+        if (now - lastObservedAtMillis > 60_000L) {
+            watermarkMinute = Math.max(watermarkMinute, Math.floorDiv(now, 60_000L) - 1);
+        }
+        if (watermarkMinute == Long.MIN_VALUE) {
+            return;
+        }
+        updateClosedMinute(now);
+
+        int recycled = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (closedThrough[slot] == Long.MIN_VALUE) {
+                continue;
+            }
+            advance(slot, closedMinute);
+            if (!hasPending(slot) && isIdle(slot)) {
+                release(slot);
+                recycled++;
+            }
+        }
+        if (recycled > 0) {
+            log.debug("Demand forecaster recycled {} idle cells, {} tracked", recycled, used);
+        }
+        if (droppedLate > 0) {
+            log.debug("Demand forecaster dropped {} events for already closed minutes", droppedLate);
+            droppedLate = 0;
+        }
+    }
+
+    // ── Watermarks ────────────────────────────────────────────────────────
+
+    /**
+     * Move closedMinute up to the minute before the slowest live partition's
+     * watermark, but at least to allowed-lateness minutes behind the newest
+     * event so a lagging partition can't hold every cell open.
+     */
+    private void updateClosedMinute(long now) {
+        if (watermarkMinute == Long.MIN_VALUE) {
+            return;
+        }
+        long slowest = watermarkMinute;
+        for (long[] mark : partitionWatermarks.values()) {
+            if (now - mark[1] <= IDLE_PARTITION_MILLIS) {
+                slowest = Math.min(slowest, mark[0]);
+            }
+        }
+        long lateness = Math.min(Math.max(0, allowedLatenessMinutes), RING - 1);
+        long closable = Math.max(slowest, watermarkMinute - lateness) - 1;
+        closedMinute = Math.max(closedMinute, closable);
+    }
+
+    // ── Model ─────────────────────────────────────────────────────────────
+
+    private double rate(int slot, int horizonMinutes) {
+        int base = slot * MODELS;
+        double mean = 0;
+        for (int k = 0; k < MODELS; k++) {
+            mean += ewma[base + k];
+        }
+        mean /= MODELS;
+
+        double covariance = 0;
+        for (int k = 0; k < MODELS; k++) {
+            covariance += (LAG_X[k] - LAG_X_MEAN) * (ewma[base + k] - mean);
+        }
+        double slope = covariance / LAG_X_VARIANCE;
+        return Math.max(0, mean + slope * (horizonMinutes - LAG_X_MEAN));
+    }
+
+    /**
+     * Close the cell's minutes up to and including {@code through}. An idle
+     * cell with nothing in a minute has nothing to learn or score, so such
+     * minutes are skipped — a new cell doesn't start with a run of zeros.
+     */
+    private void advance(int slot, long through) {
+        long from = closedThrough[slot];
+        if (through <= from) {
+            return;
+        }
+        // Pending counts all lie in the next RING minutes; past a long gap every EWMA is ~0
+        boolean jump = through - from > MAX_CATCH_UP_MINUTES;
+        long last = jump ? from + RING : through;
+        for (long minute = from + 1; minute <= last; minute++) {
+            int i = slot * RING + (int) Math.floorMod(minute, (long) RING);
+            int count = pending[i];
+            pending[i] = 0;
+            if (count > 0 || !isIdle(slot)) {
+                close(slot, minute, count);
+            }
+        }
+        if (jump) {
+            Arrays.fill(ewma, slot * MODELS, slot * MODELS + MODELS, 0);
+        }
+        closedThrough[slot] = through;
+    }
+
+    private void close(int slot, long minute, int count) {
+        int ring = (int) Math.floorMod(minute, (long) RING);
+
+        // Score the forecasts that targeted this minute
+        for (int h = 0; h < HORIZONS; h++) {
+            int i = (slot * HORIZONS + h) * RING + ring;
+            if (issuedFor[i] == minute) {
+                absoluteError[h] += Math.abs(issuedForecast[i] - count);
+                actualTotal[h] += count;
+                scoredMinutes[h]++;
+            }
+        }
+
+        int base = slot * MODELS;
+        for (int k = 0; k < MODELS; k++) {
+            ewma[base + k] += ALPHAS[k] * (count - ewma[base + k]);
+        }
+
+        // Issue the forecasts to be scored when their target minute closes
+        for (int h = 0; h < HORIZONS; h++) {
+            long target = minute + HORIZONS_MINUTES[h];
+            int i = (slot * HORIZONS + h) * RING + (int) Math.floorMod(target, (long) RING);
+            issuedForecast[i] = rate(slot, HORIZONS_MINUTES[h]);
+            issuedFor[i] = target;
+        }
+    }
+
+    private boolean hasPending(int slot) {
+        for (int i = slot * RING; i < (slot + 1) * RING; i++) {
+            if (pending[i] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isIdle(int slot) {
+        for (int k = 0; k < MODELS; k++) {
+            if (ewma[slot * MODELS + k] > IDLE_EPSILON) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ── Slots ─────────────────────────────────────────────────────────────
+
+    private int slotFor(long cell) {
+        Integer existing = slots.get(cell);
+        if (existing != null) {
+            return existing;
+        }
+        if (used >= maxCells) {
+            if (!full) {
+                log.warn("Demand forecaster is tracking {} cells (max); new cells are ignored", used);
+                full = true;
+            }
+            return -1;
+        }
+
+        int slot;
+        if (!freeSlots.isEmpty()) {
+            slot = freeSlots.pop();
+        } else {
+            if (capacity == cellOfSlot.length) {
+                grow();
+            }
+            slot = capacity++;
+        }
+        cellOfSlot[slot] = cell;
+        closedThrough[slot] = closedMinute;
+        Arrays.fill(pending, slot * RING, (slot + 1) * RING, 0);
+        Arrays.fill(ewma, slot * MODELS, slot * MODELS + MODELS, 0);
+        Arrays.fill(issuedFor, slot * HORIZONS * RING, (slot + 1) * HORIZONS * RING, -1L);
+        slots.put(cell, slot);
+        used++;
+        return slot;
+    }
+
+    private void release(int slot) {
+        slots.remove(cellOfSlot[slot]);
+        closedThrough[slot] = Long.MIN_VALUE;
+        freeSlots.push(slot);
+        used--;
+        full = false;
+    }
+
+    private void grow() {
+        int size = Math.min(maxCells, Math.max(64, cellOfSlot.length * 2));
+        cellOfSlot = Arrays.copyOf(cellOfSlot, size);
+        closedThrough = Arrays.copyOf(closedThrough, size);
+        pending = Arrays.copyOf(pending, size * RING);
+        ewma = Arrays.copyOf(ewma, size * MODELS);
+        issuedForecast = Arrays.copyOf(issuedForecast, size * HORIZONS * RING);
+        issuedFor = Arrays.copyOf(issuedFor, size * HORIZONS * RING);
+    }
+}
@@ -0,0 +1,113 @@
+package com.gocomet.ridehailing.pricing.service;
+
+import com.gocomet.ridehailing.common.geo.GeoDistance;
+import com.gocomet.ridehailing.driver.model.VehicleType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fare computation in integer minor units.
+ *
+ * Money is long paise, distance is long metres and the surge multiplier is
+ * fixed-point basis points (1.0× = 10_000). One Haversine call yields the
+ * distance; base and surged fare are then pure long arithmetic, rounded
+ * half-up. Nothing is allocated apart from the returned record.
+ *
+ * Rates come from the PricingTable of the city containing the start point:
+ * base = baseFare + perKm × km + perMinute × minutes, surged by
+ * min(surge, the tier's surge cap), and never below the tier's minimum.
+ *
+ * BigDecimal only appears at the edges: surgeBasisPoints() on the way in and
+ * the FareBreakdown accessors on the way out to JSON / the database.
+ */
+@Component
+@RequiredArgsConstructor
+public class FareEngine {
+
+    public static final int SURGE_ONE_BP = 10_000;
+
+    private final PricingTable pricingTable;
+
+    /**
+     * Distance, base fare and surged fare for a trip, in one pass.
+     * surgeBasisPoints is the surge actually applied (after the cap).
+     */
+    public record FareBreakdown(long distanceMeters, long baseFarePaise, int surgeBasisPoints, long totalFarePaise) {
+
+        public BigDecimal distanceKm() {
+            // metres → km with 2 decimals, half-up
+            return BigDecimal.valueOf((distanceMeters + 5) / 10, 2);
+        }
+
+        public BigDecimal baseFare() {
+            return BigDecimal.valueOf(baseFarePaise, 2);
+        }
+
+        public BigDecimal totalFare() {
+            return BigDecimal.valueOf(totalFarePaise, 2);
+        }
+
+        public BigDecimal surgeMultiplier() {
+            return BigDecimal.valueOf(surgeBasisPoints, 4).stripTrailingZeros();
+        }
+    }
+
+    /**
+     * Estimate for a trip that hasn't happened yet: straight-line distance and
+     * a duration derived from the city's estimate speed.
+     */
+    public FareBreakdown compute(double startLat, double startLng, double endLat, double endLng,
+                                 VehicleType tier, int surgeBasisPoints) {
+        PricingTable.CityPricing city = pricingTable.forPoint(startLat, startLng);
+        long meters = straightLineMeters(startLat, startLng, endLat, endLng);
+        return compute(city, meters, estimatedSeconds(city, meters), tier, surgeBasisPoints);
+    }
+
+    /**
+     * Fare for a measured trip (e.g. the trip odometer and actual duration).
+     */
+    public FareBreakdown compute(double startLat, double startLng, long meters, long seconds,
+                                 VehicleType tier, int surgeBasisPoints) {
+        return compute(pricingTable.forPoint(startLat, startLng), meters, seconds, tier, surgeBasisPoints);
+    }
+
+    /**
+     * Surged fare only, in paise — the ride estimate path.
+     */
+    public long totalFarePaise(double startLat, double startLng, double endLat, double endLng,
+                               VehicleType tier, int surgeBasisPoints) {
+        return compute(startLat, startLng, endLat, endLng, tier, surgeBasisPoints).totalFarePaise();
+    }
+
+    private FareBreakdown compute(PricingTable.CityPricing city, long meters, long seconds,
+                                  VehicleType tier, int surgeBasisPoints) {
+        // paise/km × m / 1000 and paise/min × s / 60, each rounded half-up
+        long base = city.baseFarePaise(tier)
+                + (city.perKmPaise(tier) * meters + 500) / 1000
+                + (city.perMinutePaise(tier) * seconds + 30) / 60;
+        int surge = Math.max(SURGE_ONE_BP, Math.min(surgeBasisPoints, city.surgeCapBasisPoints(tier)));
+        long total = (base * surge + SURGE_ONE_BP / 2) / SURGE_ONE_BP;
+
+        long minimum = city.minimumFarePaise(tier);
+        return new FareBreakdown(meters, Math.max(base, minimum), surge, Math.max(total, minimum));
+    }
+
+    private static long estimatedSeconds(PricingTable.CityPricing city, long meters) {
+        return Math.round(meters / city.estimateSpeedMps());
+    }
+
+    public static int surgeBasisPoints(double multiplier) {
+        return (int) Math.round(multiplier * SURGE_ONE_BP);
+    }
+
+    public static int surgeBasisPoints(BigDecimal multiplier) {
+        return multiplier.movePointRight(4).setScale(0, RoundingMode.HALF_UP).intValueExact();
+    }
+
+    public static long straightLineMeters(double startLat, double startLng, double endLat, double endLng) {
+        return Math.round(GeoDistance.haversineKm(startLat, startLng, endLat, endLng) * 1000);
+    }
+}
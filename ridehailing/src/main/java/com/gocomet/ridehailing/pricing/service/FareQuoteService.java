@@ -0,0 +1,157 @@
+package com.gocomet.ridehailing.pricing.service;
+
+import com.gocomet.ridehailing.common.geo.CellId;
+import com.gocomet.ridehailing.driver.model.VehicleType;
+import com.gocomet.ridehailing.pricing.dto.FareQuoteRequest;
+import com.gocomet.ridehailing.pricing.dto.FareQuoteResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Fare quotes with signed, self-contained quote tokens.
+ *
+ * A quote prices the trip once (surge table + FareEngine) and returns a token
+ * carrying tier, surge, fare, the pickup/destination cells and an expiry,
+ * signed with HMAC-SHA256. Booking with the token only verifies the signature
+ * — no surge lookup, no fare computation, no server-side quote storage — and
+ * the rider pays exactly the quoted price.
+ *
+ * Tokens are bound to the trip: pickup and destination must fall in the same
+ * cells (quote-cell-level, ~300m at level 17) and the tier must match.
+ *
+ * Token: base64url("v1:tier:surgeBp:farePaise:pickupCell:destCell:expiresAt") "." base64url(hmac)
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FareQuoteService {
+
+    private static final String VERSION = "v1";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SurgePricingService surgePricingService;
+    private final FareEngine fareEngine;
+
+    @Value("${app.fares.quote-secret:change-me-in-production}")
+    private String quoteSecret;
+
+    @Value("${app.fares.quote-ttl-seconds:120}")
+    private long quoteTtlSeconds;
+
+    @Value("${app.fares.quote-cell-level:17}")
+    private int quoteCellLevel;
+
+    // Mac is not thread-safe; one initialised instance per thread
+    private final ThreadLocal<Mac> mac = ThreadLocal.withInitial(this::newMac);
+
+    /**
+     * Verified contents of a quote token.
+     */
+    public record Quote(VehicleType vehicleTier, int surgeBasisPoints, long farePaise) {
+
+        public BigDecimal surgeMultiplier() {
+            return surgeBasisPoints == FareEngine.SURGE_ONE_BP
+                    ? BigDecimal.ONE
+                    : BigDecimal.valueOf(surgeBasisPoints, 4).stripTrailingZeros();
+        }
+
+        public BigDecimal fare() {
+            return BigDecimal.valueOf(farePaise, 2);
+        }
+    }
+
+    public FareQuoteResponse quote(FareQuoteRequest request) {
+        BigDecimal surge = surgePricingService.getSurgeMultiplier(request.getPickupLat(), request.getPickupLng());
+        FareEngine.FareBreakdown fare = fareEngine.compute(
+                request.getPickupLat(), request.getPickupLng(),
+                request.getDestinationLat(), request.getDestinationLng(),
+                request.getVehicleTier(), FareEngine.surgeBasisPoints(surge));
+
+        Instant expiresAt = Instant.now().plusSeconds(quoteTtlSeconds);
+        String payload = String.join(":",
+                VERSION,
+                request.getVehicleTier().name(),
+                String.valueOf(fare.surgeBasisPoints()),
+                String.valueOf(fare.totalFarePaise()),
+                CellId.toToken(CellId.of(request.getPickupLat(), request.getPickupLng(), quoteCellLevel)),
+                CellId.toToken(CellId.of(request.getDestinationLat(), request.getDestinationLng(), quoteCellLevel)),
+                String.valueOf(expiresAt.getEpochSecond()));
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+
+        return FareQuoteResponse.builder()
+                .vehicleTier(request.getVehicleTier())
+                .distanceKm(fare.distanceKm())
+                .surgeMultiplier(fare.surgeMultiplier())
+                .estimatedFare(fare.totalFare())
+                .currency("INR")
+                .quoteToken(ENCODER.encodeToString(payloadBytes) + "." + ENCODER.encodeToString(sign(payloadBytes)))
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    /**
+     * Verify a quote token against the trip being booked.
+     * Throws IllegalArgumentException if it is forged, expired or for another trip.
+     */
+    public Quote verify(String token, VehicleType vehicleTier,
+                        double pickupLat, double pickupLng, double destinationLat, double destinationLng) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            throw new IllegalArgumentException("Malformed quote token");
+        }
+
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            payloadBytes = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed quote token");
+        }
+        if (!MessageDigest.isEqual(sign(payloadBytes), signature)) {
+            throw new IllegalArgumentException("Invalid quote token");
+        }
+
+        String[] fields = new String(payloadBytes, StandardCharsets.UTF_8).split(":");
+        if (fields.length != 7 || !VERSION.equals(fields[0])) {
+            throw new IllegalArgumentException("Unsupported quote token");
+        }
+        if (Instant.now().getEpochSecond() > Long.parseLong(fields[6])) {
+            throw new IllegalArgumentException("Quote has expired — request a new quote");
+        }
+        if (!vehicleTier.name().equals(fields[1])
+                || !CellId.toToken(CellId.of(pickupLat, pickupLng, quoteCellLevel)).equals(fields[4])
+                || !CellId.toToken(CellId.of(destinationLat, destinationLng, quoteCellLevel)).equals(fields[5])) {
+            throw new IllegalArgumentException("Quote does not match this trip — request a new quote");
+        }
+
+        return new Quote(vehicleTier, Integer.parseInt(fields[2]), Long.parseLong(fields[3]));
+    }
+
+    private byte[] sign(byte[] payload) {
+        return mac.get().doFinal(payload);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+            instance.init(new SecretKeySpec(quoteSecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.gocomet.ridehailing.pricing.service;
+
+import com.gocomet.ridehailing.driver.model.VehicleType;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Current pricing rules per city and vehicle tier.
+ *
+ * The table is an immutable snapshot behind a volatile reference: fare
+ * calculation reads it without locks, and PricingTableLoader swaps in a whole
+ * new snapshot on reload. Within a city every rate is a primitive array
+ * indexed by VehicleType.ordinal() — a lookup is a bbox scan over a handful of
+ * cities plus an array read.
+ *
+ * Money is in paise and surge caps in basis points (see FareEngine).
+ * Until a table is loaded the built-in defaults apply.
+ */
+@Component
+public class PricingTable {
+
+    private static final int TIERS = VehicleType.values().length;
+
+    /**
+     * Rates for one city. A city without a bbox matches everywhere (the fallback).
+     */
+    public static final class CityPricing {
+
+        private final String city;
+        private final double[] bbox; // minLng, minLat, maxLng, maxLat — null for the fallback
+        private final double estimateSpeedMps;
+        private final long[] baseFarePaise;
+        private final long[] perKmPaise;
+        private final long[] perMinutePaise;
+        private final long[] minimumFarePaise;
+        private final int[] surgeCapBasisPoints;
+
+        public CityPricing(String city, double[] bbox, double estimateSpeedKmph,
+                           long[] baseFarePaise, long[] perKmPaise, long[] perMinutePaise,
+                           long[] minimumFarePaise, int[] surgeCapBasisPoints) {
+            this.city = city;
+            this.bbox = bbox != null ? bbox.clone() : null;
+            this.estimateSpeedMps = estimateSpeedKmph / 3.6;
+            this.baseFarePaise = checked(baseFarePaise);
+            this.perKmPaise = checked(perKmPaise);
+            this.perMinutePaise = checked(perMinutePaise);
+            this.minimumFarePaise = checked(minimumFarePaise);
+            this.surgeCapBasisPoints = Arrays.copyOf(surgeCapBasisPoints, TIERS);
+        }
+
+        public boolean contains(double lat, double lng) {
+            return bbox == null
+                    || (lng >= bbox[0] && lat >= bbox[1] && lng <= bbox[2] && lat <= bbox[3]);
+        }
+
+        public String city() {
+            return city;
+        }
+
+        public double estimateSpeedMps() {
+            return estimateSpeedMps;
+        }
+
+        public long baseFarePaise(VehicleType tier) {
+            return baseFarePaise[tier.ordinal()];
+        }
+
+        public long perKmPaise(VehicleType tier) {
+            return perKmPaise[tier.ordinal()];
+        }
+
+        public long perMinutePaise(VehicleType tier) {
+            return perMinutePaise[tier.ordinal()];
+        }
+
+        public long minimumFarePaise(VehicleType tier) {
+            return minimumFarePaise[tier.ordinal()];
+        }
+
+        public int surgeCapBasisPoints(VehicleType tier) {
+            return surgeCapBasisPoints[tier.ordinal()];
+        }
+
+        private static long[] checked(long[] rates) {
+            if (rates.length != TIERS) {
+                throw new IllegalArgumentException("Expected a rate for each of " + TIERS + " vehicle tiers");
+            }
+            return rates.clone();
+        }
+    }
+
+    /**
+     * Cities are matched in order; the fallback applies outside every bbox.
+     */
+    public record Snapshot(long version, Instant loadedAt, String source, CityPricing[] cities, CityPricing fallback) {
+    }
+
+    private volatile Snapshot current = defaults();
+
+    public CityPricing forPoint(double lat, double lng) {
+        Snapshot snapshot = current;
+        for (CityPricing city : snapshot.cities()) {
+            if (city.contains(lat, lng)) {
+                return city;
+            }
+        }
+        return snapshot.fallback();
+    }
+
+    public Snapshot current() {
+        return current;
+    }
+
+    void publish(Snapshot snapshot) {
+        current = snapshot;
+    }
+
+    // AUTO / SEDAN / SUV: ₹8 / ₹12 / ₹18 per km, ₹30 minimum, 3.0× surge cap
+    private static Snapshot defaults() {
+        CityPricing fallback = new CityPricing("default", null, 20,
+                new long[]{0, 0, 0},
+                new long[]{8_00, 12_00, 18_00},
+                new long[]{0, 0, 0},
+                new long[]{30_00, 30_00, 30_00},
+                new int[]{30_000, 30_000, 30_000});
+        return new Snapshot(0, Instant.EPOCH, "built-in defaults", new CityPricing[0], fallback);
+    }
+}
@@ -0,0 +1,183 @@
+package com.gocomet.ridehailing.pricing.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gocomet.ridehailing.driver.model.VehicleType;
+import com.gocomet.ridehailing.pricing.dto.PricingConfig;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the pricing table from a JSON file and publishes it to PricingTable.
+ *
+ * The file is re-read when its modification time changes (polled) or on
+ * demand via POST /v1/admin/pricing/reload. A new table is fully parsed and
+ * validated before the swap; an invalid file is rejected and the current
+ * table stays in force.
+ *
+ * Point app.pricing.table-location at a file outside the jar (file:/...) to
+ * change prices without a redeploy.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PricingTableLoader {
+
+    private final PricingTable pricingTable;
+    private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.pricing.table-location:classpath:pricing/pricing-table.json}")
+    private String tableLocation;
+
+    private volatile long loadedModifiedAt = -1;
+    private volatile PricingConfig loadedConfig;
+
+    @PostConstruct
+    public void loadOnStartup() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.error("Failed to load pricing table from {} — using {}", tableLocation,
+                    pricingTable.current().source(), e);
+        }
+    }
+
+    /**
+     * Reload when the file changed since the last successful load.
+     */
+    @Scheduled(fixedDelayString = "${app.pricing.reload-interval-ms:30000}")
+    public void reloadIfModified() {
+        try {
+            long modifiedAt = resourceLoader.getResource(tableLocation).lastModified();
+            if (modifiedAt != loadedModifiedAt) {
+                reload();
+            }
+        } catch (IOException e) {
+            // Not a file (e.g. inside the jar) — only explicit reloads apply
+        } catch (Exception e) {
+            log.error("Pricing table reload from {} rejected, keeping v{}", tableLocation,
+                    pricingTable.current().version(), e);
+        }
+    }
+
+    /**
+     * Parse, validate and publish the table. Throws IllegalArgumentException
+     * if the file is invalid; the current table is left untouched.
+     */
+    public synchronized PricingTable.Snapshot reload() {
+        Resource resource = resourceLoader.getResource(tableLocation);
+        PricingConfig config;
+        long modifiedAt;
+        try (InputStream in = resource.getInputStream()) {
+            modifiedAt = lastModified(resource);
+            config = objectMapper.readValue(in, PricingConfig.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read pricing table " + tableLocation + ": " + e.getMessage(), e);
+        }
+
+        PricingTable.Snapshot snapshot = build(config, pricingTable.current().version() + 1);
+        pricingTable.publish(snapshot);
+        loadedModifiedAt = modifiedAt;
+        loadedConfig = config;
+
+        log.info("Pricing table v{} loaded from {} ({} cities)",
+                snapshot.version(), tableLocation, snapshot.cities().length + 1);
+        return snapshot;
+    }
+
+    public PricingConfig getLoadedConfig() {
+        return loadedConfig;
+    }
+
+    private PricingTable.Snapshot build(PricingConfig config, long version) {
+        if (config.getCities() == null || config.getCities().isEmpty()) {
+            throw new IllegalArgumentException("Pricing table has no cities");
+        }
+
+        List<PricingTable.CityPricing> cities = new ArrayList<>();
+        PricingTable.CityPricing fallback = null;
+        for (PricingConfig.City city : config.getCities()) {
+            if (fallback != null) {
+                throw new IllegalArgumentException("City '" + city.getCity() + "' follows the fallback city");
+            }
+            PricingTable.CityPricing pricing = toCityPricing(city);
+            if (city.getBbox() == null) {
+                fallback = pricing;
+            } else {
+                cities.add(pricing);
+            }
+        }
+        if (fallback == null) {
+            throw new IllegalArgumentException("Pricing table needs a fallback city without a bbox");
+        }
+
+        return new PricingTable.Snapshot(version, Instant.now(), tableLocation,
+                cities.toArray(new PricingTable.CityPricing[0]), fallback);
+    }
+
+    private PricingTable.CityPricing toCityPricing(PricingConfig.City city) {
+        String name = city.getCity();
+        if (city.getBbox() != null && (city.getBbox().length != 4
+                || city.getBbox()[0] > city.getBbox()[2] || city.getBbox()[1] > city.getBbox()[3])) {
+            throw new IllegalArgumentException("City '" + name + "' bbox must be minLng,minLat,maxLng,maxLat");
+        }
+        if (city.getEstimateSpeedKmph() <= 0) {
+            throw new IllegalArgumentException("City '" + name + "' needs a positive estimateSpeedKmph");
+        }
+
+        VehicleType[] tiers = VehicleType.values();
+        long[] baseFare = new long[tiers.length];
+        long[] perKm = new long[tiers.length];
+        long[] perMinute = new long[tiers.length];
+        long[] minimumFare = new long[tiers.length];
+        int[] surgeCap = new int[tiers.length];
+
+        for (VehicleType tier : tiers) {
+            PricingConfig.TierRates rates = city.getTiers() != null ? city.getTiers().get(tier) : null;
+            if (rates == null) {
+                throw new IllegalArgumentException("City '" + name + "' has no rates for " + tier);
+            }
+            int i = tier.ordinal();
+            baseFare[i] = paise(rates.getBaseFare(), name, tier);
+            perKm[i] = paise(rates.getPerKm(), name, tier);
+            perMinute[i] = paise(rates.getPerMinute(), name, tier);
+            minimumFare[i] = paise(rates.getMinimumFare(), name, tier);
+            if (rates.getSurgeCap() == null || rates.getSurgeCap().compareTo(BigDecimal.ONE) < 0) {
+                throw new IllegalArgumentException("City '" + name + "' " + tier + " surgeCap must be at least 1.0");
+            }
+            surgeCap[i] = FareEngine.surgeBasisPoints(rates.getSurgeCap());
+        }
+
+        return new PricingTable.CityPricing(name, city.getBbox(), city.getEstimateSpeedKmph(),
+                baseFare, perKm, perMinute, minimumFare, surgeCap);
+    }
+
+    private static long paise(BigDecimal rupees, String city, VehicleType tier) {
+        if (rupees == null || rupees.signum() < 0) {
+            throw new IllegalArgumentException("City '" + city + "' " + tier + " has a missing or negative amount");
+        }
+        return rupees.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
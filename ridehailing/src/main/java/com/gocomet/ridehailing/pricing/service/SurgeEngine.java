@@ -0,0 +1,281 @@
+package com.gocomet.ridehailing.pricing.service;
+
+import com.gocomet.ridehailing.common.geo.CellId;
+import com.gocomet.ridehailing.driver.service.LocationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+/**
+ * Periodic bulk surge recomputation.
+ *
+ * Every tick one instance (holder of the "surge:engine:lease" key):
+ * 1. Lists cells with demand in the last window
+ * 2. Reads demand (sliding-window counters) and supply (drivers in the geo
+ *    index) for all of them — one pipelined round trip each
+ * 3. Takes the larger of observed and forecast demand (DemandForecaster), so
+ *    surge starts rising before a predicted spike lands
+ * 4. Computes multipliers in parallel from the demand/supply ratio, blended
+ *    with neighbouring cells and capped both absolutely and per tick
+ * 5. Writes the whole table to the "surge:table" hash in one pipelined call,
+ *    stamped with a monotonically increasing version
+ *
+ * Every other instance only polls "surge:version" and reloads the hash when it
+ * moves. Request-path reads are served from SurgeTable, so recomputation cost
+ * scales with the number of active cells, not with ride request volume.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SurgeEngine {
+
+    private static final String TABLE_KEY = "surge:table";
+    private static final String VERSION_KEY = "surge:version";
+    private static final String LEASE_KEY = "surge:engine:lease";
+    private static final String VERSION_FIELD = "version";
+
+    // Take the lease if it's free, or renew it if we hold it — one atomic step,
+    // so a lease that expires between the check and the renewal can't be
+    // extended on behalf of whoever took it over. ARGV[1] = instance id,
+    // ARGV[2] = ttl in ms
+    private static final RedisScript<Long> LEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then
+                return 1
+            end
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final DemandCounterService demandCounterService;
+    private final LocationService locationService;
+    private final SurgeTable surgeTable;
+    private final SurgeHeatmapService surgeHeatmapService;
+    private final DemandForecaster demandForecaster;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    @Value("${app.surge.engine.interval-ms:5000}")
+    private long intervalMs;
+
+    // Demand/supply ratio above which surge starts to apply
+    @Value("${app.surge.ratio-threshold:1.0}")
+    private double ratioThreshold;
+
+    // Multiplier added per unit of ratio above the threshold
+    @Value("${app.surge.sensitivity:0.05}")
+    private double sensitivity;
+
+    @Value("${app.surge.max-multiplier:3.0}")
+    private double maxMultiplier;
+
+    // Largest change a cell's multiplier may make in one tick
+    @Value("${app.surge.max-step:0.5}")
+    private double maxStep;
+
+    // Weight of the neighbouring cells' average ratio when smoothing
+    @Value("${app.surge.neighbour-weight:0.3}")
+    private double neighbourWeight;
+
+    // Pre-warm: price on forecast demand this far ahead when it exceeds observed demand
+    @Value("${app.surge.forecast.enabled:true}")
+    private boolean forecastEnabled;
+
+    @Value("${app.surge.forecast.prewarm-horizon-minutes:5}")
+    private int prewarmHorizonMinutes;
+
+    @Scheduled(fixedDelayString = "${app.surge.engine.interval-ms:5000}")
+    public void tick() {
+        try {
+            if (acquireLease()) {
+                recompute();
+            } else {
+                refreshFromRedis();
+            }
+        } catch (Exception e) {
+            log.error("Surge engine tick failed", e);
+        }
+    }
+
+    void recompute() {
+        long started = System.nanoTime();
+        long[] cells = demandCounterService.activeCells();
+        SurgeTable.Snapshot previous = surgeTable.current();
+        int n = cells.length;
+
+        // Snapshot demand and supply for every active cell
+        long[] observed = demandCounterService.countAll(cells);
+        double[] demand = new double[n];
+        double[] forecast = forecastEnabled
+                ? demandForecaster.forecastWindowCounts(cells, prewarmHorizonMinutes,
+                        Math.max(1, demandCounterService.getWindowSeconds() / 60))
+                : new double[n];
+        for (int i = 0; i < n; i++) {
+            demand[i] = Math.max(observed[i], forecast[i]);
+        }
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        double[] edgesKm = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = CellId.centerLat(cells[i]);
+            lngs[i] = CellId.centerLng(cells[i]);
+            edgesKm[i] = CellId.edgeKm(cells[i]);
+        }
+        long[] supply = locationService.countDriversInBoxes(lats, lngs, edgesKm, edgesKm);
+
+        double[] ratio = new double[n];
+        for (int i = 0; i < n; i++) {
+            ratio[i] = demand[i] / (double) Math.max(1, supply[i]);
+        }
+
+        // cells is sorted, so neighbour lookups are binary searches
+        double[] multipliers = new double[n];
+        IntStream.range(0, n).parallel()
+                .forEach(i -> multipliers[i] = multiplierFor(i, cells, ratio, previous));
+
+        int surging = 0;
+        for (double multiplier : multipliers) {
+            if (multiplier > 1.0) {
+                surging++;
+            }
+        }
+        long[] tableCells = new long[surging];
+        double[] tableMultipliers = new double[surging];
+        for (int i = 0, k = 0; i < n; i++) {
+            if (multipliers[i] > 1.0) {
+                tableCells[k] = cells[i];
+                tableMultipliers[k++] = multipliers[i];
+            }
+        }
+
+        long version = write(tableCells, tableMultipliers);
+        publish(previous, new SurgeTable.Snapshot(version, tableCells, tableMultipliers), true);
+
+        log.debug("Surge table v{} recomputed: {} active cells, {} surging, {}ms",
+                version, n, surging, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private double multiplierFor(int i, long[] cells, double[] ratio, SurgeTable.Snapshot previous) {
+        // Blend with the average of active neighbours so adjacent cells don't jump
+        long[] around = new long[8];
+        int count = CellId.neighbours(cells[i], around);
+        double neighbourSum = 0;
+        int neighbours = 0;
+        for (int k = 0; k < count; k++) {
+            int j = Arrays.binarySearch(cells, around[k]);
+            if (j >= 0) {
+                neighbourSum += ratio[j];
+                neighbours++;
+            }
+        }
+        double smoothed = neighbours == 0
+                ? ratio[i]
+                : (1 - neighbourWeight) * ratio[i] + neighbourWeight * (neighbourSum / neighbours);
+
+        double target = 1.0 + sensitivity * Math.max(0, smoothed - ratioThreshold);
+        target = Math.min(target, maxMultiplier);
+
+        // Cap the change per tick
+        double before = previous.multiplier(cells[i]);
+        target = Math.max(before - maxStep, Math.min(before + maxStep, target));
+
+        // Round to 0.1 steps — matches what riders see on the fare breakdown
+        return Math.max(1.0, Math.round(target * 10) / 10.0);
+    }
+
+    /**
+     * Write the table to Redis: fill a staging hash and RENAME it over the live
+     * one in a single pipelined call, so readers never see a half-written table.
+     */
+    private long write(long[] cells, double[] multipliers) {
+        Long version = redisTemplate.opsForValue().increment(VERSION_KEY);
+        long v = version != null ? version : 0;
+
+        Map<byte[], byte[]> fields = new HashMap<>(cells.length * 2 + 2);
+        fields.put(bytes(VERSION_FIELD), bytes(String.valueOf(v)));
+        for (int i = 0; i < cells.length; i++) {
+            fields.put(bytes(CellId.toToken(cells[i])), bytes(String.valueOf(multipliers[i])));
+        }
+
+        byte[] staging = bytes(TABLE_KEY + ":" + v);
+        byte[] live = bytes(TABLE_KEY);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hMSet(staging, fields);
+            connection.keyCommands().rename(staging, live);
+            return null;
+        });
+        return v;
+    }
+
+    /**
+     * Followers: reload the table only when the published version moved.
+     */
+    private void refreshFromRedis() {
+        String published = redisTemplate.opsForValue().get(VERSION_KEY);
+        if (published == null || Long.parseLong(published) <= surgeTable.current().version()) {
+            return;
+        }
+
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(TABLE_KEY);
+        long version = 0;
+        Map<Long, Double> table = new HashMap<>(entries.size() * 2);
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            String field = (String) entry.getKey();
+            if (VERSION_FIELD.equals(field)) {
+                version = Long.parseLong((String) entry.getValue());
+            } else {
+                table.put(CellId.fromToken(field), Double.parseDouble((String) entry.getValue()));
+            }
+        }
+
+        if (version > surgeTable.current().version()) {
+            long[] cells = table.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            double[] multipliers = new double[cells.length];
+            for (int i = 0; i < cells.length; i++) {
+                multipliers[i] = table.get(cells[i]);
+            }
+            publish(surgeTable.current(), new SurgeTable.Snapshot(version, cells, multipliers), false);
+            log.debug("Surge table refreshed to v{} ({} surging cells)", version, cells.length);
+        }
+    }
+
+    /**
+     * Swap the in-memory table and push the changed cells to heatmap
+     * subscribers. With the simple broker every instance pushes to its own
+     * sockets; with a cluster-wide broker only the leader pushes.
+     */
+    private void publish(SurgeTable.Snapshot previous, SurgeTable.Snapshot next, boolean leader) {
+        surgeTable.publish(next);
+        try {
+            surgeHeatmapService.publishDelta(previous, next, leader);
+        } catch (Exception e) {
+            log.warn("Failed to push surge delta for v{}: {}", next.version(), e.getMessage());
+        }
+    }
+
+    private boolean acquireLease() {
+        Long held = redisTemplate.execute(LEASE_SCRIPT, List.of(LEASE_KEY),
+                instanceId, String.valueOf(intervalMs * 3));
+        return held != null && held == 1;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,183 @@
+package com.gocomet.ridehailing.pricing.service;
+
+import com.gocomet.ridehailing.common.geo.CellId;
+import com.gocomet.ridehailing.notification.service.NotificationService;
+import com.gocomet.ridehailing.pricing.dto.SurgeHeatmapResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Surge heatmap for ops and driver apps.
+ *
+ * Snapshots are served from the in-memory SurgeTable, never from Redis.
+ * Live updates go out on /topic/surge.{region}: after every table swap only
+ * the cells whose multiplier changed are pushed, grouped by region (a coarse
+ * CellId parent), so a client watching one city gets one small message per
+ * engine tick at most.
+ *
+ * Every instance swaps in each table version, but with a cluster-wide
+ * broker only the surge engine's lease holder pushes the delta — otherwise
+ * each subscriber would get one copy per instance.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SurgeHeatmapService {
+
+    private static final int MAX_REGIONS_PER_QUERY = 256;
+
+    private final SurgeTable surgeTable;
+    private final NotificationService notificationService;
+
+    @Value("${app.surge.cell-level:15}")
+    private int cellLevel;
+
+    // Level 9 ≈ 75km regions — roughly one per city
+    @Value("${app.surge.heatmap.region-level:9}")
+    private int regionLevel;
+
+    /**
+     * Surging cells whose centre lies in the bbox (minLng,minLat,maxLng,maxLat).
+     */
+    public SurgeHeatmapResponse getHeatmap(String bbox) {
+        double[] box = parseBbox(bbox);
+        double minLng = box[0], minLat = box[1], maxLng = box[2], maxLat = box[3];
+
+        SurgeTable.Snapshot snapshot = surgeTable.current();
+        long[] cells = snapshot.cells();
+        double[] multipliers = snapshot.multipliers();
+
+        List<String> tokens = new ArrayList<>();
+        double[] lats = new double[cells.length];
+        double[] lngs = new double[cells.length];
+        double[] values = new double[cells.length];
+        int count = 0;
+        for (int i = 0; i < cells.length; i++) {
+            double lat = CellId.centerLat(cells[i]);
+            double lng = CellId.centerLng(cells[i]);
+            if (lat >= minLat && lat <= maxLat && lng >= minLng && lng <= maxLng) {
+                tokens.add(CellId.toToken(cells[i]));
+                lats[count] = lat;
+                lngs[count] = lng;
+                values[count++] = multipliers[i];
+            }
+        }
+
+        return SurgeHeatmapResponse.builder()
+                .version(snapshot.version())
+                .cellLevel(cellLevel)
+                .regions(regionsCovering(minLat, minLng, maxLat, maxLng))
+                .cells(tokens)
+                .lats(Arrays.copyOf(lats, count))
+                .lngs(Arrays.copyOf(lngs, count))
+                .multipliers(Arrays.copyOf(values, count))
+                .build();
+    }
+
+    /**
+     * Push the cells that changed between two snapshots to their region topics.
+     * Both arrays are sorted, so this is a single merge pass. leader is
+     * whether this instance computed the table (holds the engine lease).
+     */
+    public void publishDelta(SurgeTable.Snapshot previous, SurgeTable.Snapshot next, boolean leader) {
+        if (!leader && notificationService.isClusterWide()) {
+            // The leader's push already reached this node's subscribers
+            return;
+        }
+        long[] before = previous.cells();
+        long[] after = next.cells();
+        Map<Long, RegionDelta> deltas = new HashMap<>();
+
+        int i = 0, j = 0;
+        while (i < before.length || j < after.length) {
+            if (j >= after.length || (i < before.length && before[i] < after[j])) {
+                // Cell dropped out of the table → back to 1.0×
+                delta(deltas, before[i]).add(before[i], 1.0);
+                i++;
+            } else if (i >= before.length || after[j] < before[i]) {
+                delta(deltas, after[j]).add(after[j], next.multipliers()[j]);
+                j++;
+            } else {
+                if (previous.multipliers()[i] != next.multipliers()[j]) {
+                    delta(deltas, after[j]).add(after[j], next.multipliers()[j]);
+                }
+                i++;
+                j++;
+            }
+        }
+
+        deltas.forEach((region, delta) -> notificationService.broadcastSurgeDelta(
+                CellId.toToken(region), next.version(), delta.cells, delta.multipliers()));
+
+        if (!deltas.isEmpty()) {
+            log.debug("Surge v{} delta pushed to {} regions", next.version(), deltas.size());
+        }
+    }
+
+    private RegionDelta delta(Map<Long, RegionDelta> deltas, long cell) {
+        return deltas.computeIfAbsent(CellId.parent(cell, regionLevel), region -> new RegionDelta());
+    }
+
+    private List<String> regionsCovering(double minLat, double minLng, double maxLat, double maxLng) {
+        long northWest = CellId.of(maxLat, minLng, regionLevel);
+        long southEast = CellId.of(minLat, maxLng, regionLevel);
+        int x0 = CellId.x(northWest), x1 = CellId.x(southEast);
+        int y0 = CellId.y(northWest), y1 = CellId.y(southEast);
+
+        if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > MAX_REGIONS_PER_QUERY) {
+            throw new IllegalArgumentException("bbox is too large — zoom in");
+        }
+
+        List<String> regions = new ArrayList<>();
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                regions.add(CellId.toToken(CellId.fromXY(regionLevel, x, y)));
+            }
+        }
+        return regions;
+    }
+
+    private static double[] parseBbox(String bbox) {
+        String[] parts = bbox.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("bbox must be minLng,minLat,maxLng,maxLat");
+        }
+        double[] box = new double[4];
+        try {
+            for (int i = 0; i < 4; i++) {
+                box[i] = Double.parseDouble(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bbox must be minLng,minLat,maxLng,maxLat");
+        }
+        if (box[0] > box[2] || box[1] > box[3]) {
+            throw new IllegalArgumentException("bbox min corner must be south-west of max corner");
+        }
+        return box;
+    }
+
+    private static final class RegionDelta {
+        private final List<String> cells = new ArrayList<>();
+        private double[] values = new double[8];
+
+        void add(long cell, double multiplier) {
+            if (cells.size() == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[cells.size()] = multiplier;
+            cells.add(CellId.toToken(cell));
+        }
+
+        double[] multipliers() {
+            return Arrays.copyOf(values, cells.size());
+        }
+    }
+}
@@ -1,131 +1,69 @@
 package com.gocomet.ridehailing.pricing.service;
 
+import com.gocomet.ridehailing.common.geo.CellId;
+import com.gocomet.ridehailing.common.geo.GeoDistance;
+import com.gocomet.ridehailing.driver.model.VehicleType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class SurgePricingService {
 
-    private final StringRedisTemplate redisTemplate;
+    private final DemandCounterService demandCounterService;
+    private final SurgeTable surgeTable;
+    private final FareEngine fareEngine;
 
-    private static final String SURGE_PREFIX = "surge:";
-    private static final int SURGE_TTL_SECONDS = 60;
-
-    // Base fare per km for each tier
-    private static final BigDecimal AUTO_BASE_PER_KM = new BigDecimal("8.00");
-    private static final BigDecimal SEDAN_BASE_PER_KM = new BigDecimal("12.00");
-    private static final BigDecimal SUV_BASE_PER_KM = new BigDecimal("18.00");
-
-    private static final BigDecimal MINIMUM_FARE = new BigDecimal("30.00");
+    // CellId level for demand tracking and surge (15 ≈ 1.2km cells around Bangalore)
+    @Value("${app.surge.cell-level:15}")
+    private int cellLevel;
 
     /**
-     * Calculate surge multiplier based on demand in the area.
-     * Uses a simplified geo-hash approach — divides the world into grid cells
-     * and tracks demand per cell.
+     * Current surge multiplier for the area.
+     * Served from the in-memory table that SurgeEngine recomputes every few
+     * seconds — no Redis round trip on the request path.
      */
     public BigDecimal getSurgeMultiplier(double lat, double lng) {
-        String geoHash = getSimpleGeoHash(lat, lng);
-        String surgeKey = SURGE_PREFIX + geoHash;
-
-        String cachedSurge = redisTemplate.opsForValue().get(surgeKey);
-        if (cachedSurge != null) {
-            return new BigDecimal(cachedSurge);
-        }
-
-        // Calculate based on recent demand (simplified)
-        // In production, this would look at request count vs available drivers
-        BigDecimal surge = BigDecimal.ONE;
-
-        // Cache it
-        redisTemplate.opsForValue().set(surgeKey, surge.toString(), SURGE_TTL_SECONDS, TimeUnit.SECONDS);
-
-        return surge;
+        double surge = surgeTable.multiplier(cellOf(lat, lng));
+        return surge == 1.0 ? BigDecimal.ONE : BigDecimal.valueOf(surge);
     }
 
     /**
      * Record demand in an area (call this when a ride is requested).
-     * Increments a counter that the surge calculation uses.
+     * Adds the request to the cell's sliding-window counter; the surge engine
+     * picks it up on its next tick.
      */
     public void recordDemand(double lat, double lng) {
-        String geoHash = getSimpleGeoHash(lat, lng);
-        String demandKey = "demand:" + geoHash;
-        redisTemplate.opsForValue().increment(demandKey);
-        redisTemplate.expire(demandKey, 5, TimeUnit.MINUTES);
-
-        // Recalculate surge for this area
-        recalculateSurge(geoHash, demandKey);
-    }
-
-    private void recalculateSurge(String geoHash, String demandKey) {
-        String countStr = redisTemplate.opsForValue().get(demandKey);
-        long demandCount = countStr != null ? Long.parseLong(countStr) : 0;
-
-        BigDecimal surge;
-        if (demandCount > 20) {
-            surge = new BigDecimal("2.0");
-        } else if (demandCount > 10) {
-            surge = new BigDecimal("1.5");
-        } else if (demandCount > 5) {
-            surge = new BigDecimal("1.2");
-        } else {
-            surge = BigDecimal.ONE;
-        }
-
-        String surgeKey = SURGE_PREFIX + geoHash;
-        redisTemplate.opsForValue().set(surgeKey, surge.toString(), SURGE_TTL_SECONDS, TimeUnit.SECONDS);
-
-        log.debug("Surge for area {}: {} (demand: {})", geoHash, surge, demandCount);
+        demandCounterService.record(cellOf(lat, lng));
     }
 
     /**
-     * Estimate fare based on distance, tier, and surge.
+     * Estimate fare based on distance, tier, and surge (see FareEngine).
      */
     public BigDecimal estimateFare(double pickupLat, double pickupLng,
                                     double destLat, double destLng,
-                                    String vehicleTier, BigDecimal surgeMultiplier) {
-        double distanceKm = calculateDistance(pickupLat, pickupLng, destLat, destLng);
-
-        BigDecimal baseFarePerKm = switch (vehicleTier) {
-            case "AUTO" -> AUTO_BASE_PER_KM;
-            case "SUV" -> SUV_BASE_PER_KM;
-            default -> SEDAN_BASE_PER_KM;
-        };
-
-        BigDecimal fare = baseFarePerKm
-                .multiply(BigDecimal.valueOf(distanceKm))
-                .multiply(surgeMultiplier);
-
-        // Apply minimum fare
-        return fare.compareTo(MINIMUM_FARE) < 0 ? MINIMUM_FARE : fare.setScale(2, java.math.RoundingMode.HALF_UP);
+                                    VehicleType vehicleTier, BigDecimal surgeMultiplier) {
+        long paise = fareEngine.totalFarePaise(pickupLat, pickupLng, destLat, destLng,
+                vehicleTier, FareEngine.surgeBasisPoints(surgeMultiplier));
+        return BigDecimal.valueOf(paise, 2);
     }
 
     /**
      * Calculate distance between two points using Haversine formula.
      */
     public double calculateDistance(double lat1, double lng1, double lat2, double lng2) {
-        final double R = 6371; // Earth's radius in km
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLng = Math.toRadians(lng2 - lng1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
+        return GeoDistance.haversineKm(lat1, lng1, lat2, lng2);
     }
 
     /**
-     * Simple geo-hash: divides world into ~1km grid cells.
+     * Surge cell containing the point.
      */
-    private String getSimpleGeoHash(double lat, double lng) {
-        int latCell = (int) (lat * 100);
-        int lngCell = (int) (lng * 100);
-        return latCell + ":" + lngCell;
+    public long cellOf(double lat, double lng) {
+        return CellId.of(lat, lng, cellLevel);
     }
 }
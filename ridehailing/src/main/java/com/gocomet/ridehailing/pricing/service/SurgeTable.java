@@ -0,0 +1,46 @@
+package com.gocomet.ridehailing.pricing.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * In-memory copy of the latest surge multipliers, published by SurgeEngine.
+ *
+ * Request-path reads never touch Redis — they look up the current immutable
+ * snapshot, which is swapped atomically on every engine tick. Cells missing
+ * from the snapshot have no surge (1.0×).
+ *
+ * A snapshot is two parallel arrays: CellIds sorted ascending and their
+ * multipliers. Lookups are a binary search on primitives — no boxing, no
+ * per-request allocation. Callers must treat the arrays as read-only.
+ */
+@Component
+public class SurgeTable {
+
+    public record Snapshot(long version, long[] cells, double[] multipliers) {
+
+        public double multiplier(long cell) {
+            int i = Arrays.binarySearch(cells, cell);
+            return i >= 0 ? multipliers[i] : 1.0;
+        }
+
+        public int size() {
+            return cells.length;
+        }
+    }
+
+    private volatile Snapshot current = new Snapshot(0, new long[0], new double[0]);
+
+    public Snapshot current() {
+        return current;
+    }
+
+    public double multiplier(long cell) {
+        return current.multiplier(cell);
+    }
+
+    void publish(Snapshot snapshot) {
+        current = snapshot;
+    }
+}
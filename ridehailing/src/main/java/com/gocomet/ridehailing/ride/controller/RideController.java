@@ -2,9 +2,11 @@ package com.gocomet.ridehailing.ride.controller;
 
 import com.gocomet.ridehailing.ride.dto.RideRequest;
 import com.gocomet.ridehailing.ride.dto.RideResponse;
+import com.gocomet.ridehailing.ride.service.RideReadModel;
 import com.gocomet.ridehailing.ride.service.RideService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -29,10 +31,17 @@ public class RideController {
 
     /**
      * GET /v1/rides/{id} — Get ride status
+     * Served from the in-memory read model; 304 when If-None-Match matches the ETag.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<RideResponse> getRide(@PathVariable UUID id) {
-        return ResponseEntity.ok(rideService.getRide(id));
+    public ResponseEntity<RideResponse> getRide(
+            @PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        RideReadModel.View view = rideService.getRideView(id);
+        if (view.etag().equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(view.etag()).build();
+        }
+        return ResponseEntity.ok().eTag(view.etag()).body(view.response());
     }
 
     /**
@@ -0,0 +1,37 @@
+package com.gocomet.ridehailing.ride.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.gocomet.ridehailing.driver.model.VehicleType;
+import com.gocomet.ridehailing.ride.model.RideStatus;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One row of a rider's ride history — projected straight from the rides
+ * table (see RideRepository.findHistory), no entity loading.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RideHistoryItem {
+
+    private UUID id;
+    private RideStatus status;
+    private VehicleType vehicleTier;
+    private Double pickupLat;
+    private Double pickupLng;
+    private Double destinationLat;
+    private Double destinationLng;
+    private BigDecimal estimatedFare;
+    private UUID assignedDriverId;
+    private LocalDateTime createdAt;
+
+    // rides.state_seq of the snapshot the row was read at — internal only
+    @JsonIgnore
+    private Integer stateSeq;
+}
@@ -37,4 +37,7 @@ public class RideRequest {
 
     // Optional: client-generated idempotency key
     private String idempotencyKey;
+
+    // Optional: token from POST /v1/fares/quote — books at the quoted surge and fare
+    private String quoteToken;
 }
@@ -42,12 +42,15 @@ public class RideEventConsumer {
 
         switch (event.getEventType()) {
             case REQUESTED -> log.debug("   ↳ Ride requested, matching in progress...");
+            case DRIVER_OFFERED -> log.info("   ↳ Ride {} offered to driver {}",
+                    event.getRideId(), event.getDriverId());
             case DRIVER_ASSIGNED -> log.info("   ↳ Driver {} assigned to ride {}",
                     event.getDriverId(), event.getRideId());
             case TRIP_STARTED -> log.info("   ↳ Trip started for ride {}", event.getRideId());
             case TRIP_COMPLETED -> log.info("   ↳ Trip completed. Fare details: {}", event.getMetadata());
             case CANCELLED -> log.info("   ↳ Ride {} cancelled. Reason: {}", event.getRideId(), event.getMetadata());
             case NO_DRIVERS -> log.warn("   ↳ No drivers found for ride {}", event.getRideId());
+            case EXPIRED -> log.warn("   ↳ Ride {} expired before a driver accepted", event.getRideId());
             default -> log.debug("   ↳ Event type {} received", event.getEventType());
         }
 
@@ -55,6 +58,6 @@ public class RideEventConsumer {
         // - DRIVER_ASSIGNED → push WebSocket notification to rider (outside this tx)
         // - TRIP_COMPLETED → trigger billing service
         // - CANCELLED → release surge demand counter in Redis
-        // - NO_DRIVERS → retry logic / notify rider
+        // - NO_DRIVERS → retry logic
     }
 }
@@ -0,0 +1,127 @@
+package com.gocomet.ridehailing.ride.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gocomet.ridehailing.common.event.RideEvent;
+import com.gocomet.ridehailing.ride.model.RideEventOutbox;
+import com.gocomet.ridehailing.ride.repository.RideEventOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains ride_event_outbox to the "ride-events" topic.
+ *
+ * Each pass locks a batch of up to batch-size rows — the oldest pending
+ * event of each ride, in relay_order — with FOR UPDATE SKIP LOCKED, sends
+ * them all without waiting in between (the producer batches them into a few
+ * requests), then waits for the acks and deletes the acknowledged rows with
+ * a single DELETE … WHERE id IN (…). Passes repeat until the table is
+ * drained. Several instances can relay at once: locked rows are skipped, not
+ * waited on.
+ *
+ * Per-ride order: a ride's next event is only picked once the previous one
+ * was acknowledged and deleted, so its events reach the partition in the
+ * order they were committed, whichever instance wrote or relays them.
+ *
+ * Delivery is at-least-once. A row whose send fails stays for the next pass
+ * and holds back its ride's later events; other rides' acknowledged rows are
+ * deleted. Consumers may see a duplicate but never a gap. Deduplicate on
+ * eventId.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RideEventOutboxRelay {
+
+    private final RideEventOutboxRepository outboxRepository;
+    private final KafkaTemplate<String, RideEvent> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.kafka.topics.ride-events}")
+    private String topic;
+
+    @Value("${app.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.outbox.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay-interval-ms:200}")
+    public void relay() {
+        try {
+            Integer relayed;
+            do {
+                relayed = transactionTemplate.execute(status -> relayBatch());
+            } while (relayed != null && relayed > 0);
+        } catch (Exception e) {
+            log.error("Ride event outbox relay failed — will retry", e);
+        }
+    }
+
+    /**
+     * Send and delete one batch inside the caller's transaction. Returns the
+     * number of rows relayed, or 0 when the outbox is drained or a send
+     * failed, so the pass stops.
+     */
+    private int relayBatch() {
+        List<RideEventOutbox> batch = outboxRepository.lockNextBatch(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<SendResult<String, RideEvent>>> sends = new ArrayList<>(batch.size());
+        for (RideEventOutbox row : batch) {
+            RideEvent event;
+            try {
+                event = objectMapper.readValue(row.getPayload(), RideEvent.class);
+            } catch (Exception e) {
+                // Would block the head of the outbox forever — drop it with the batch
+                log.error("❌ Dropping unreadable outbox row {} [{}] for ride {}",
+                        row.getId(), row.getEventType(), row.getRideId(), e);
+                sends.add(CompletableFuture.completedFuture(null));
+                continue;
+            }
+            try {
+                sends.add(kafkaTemplate.send(topic, row.getRideId().toString(), event));
+            } catch (Exception e) {
+                sends.add(CompletableFuture.failedFuture(e));
+            }
+        }
+
+        // A batch holds at most one row per ride, so every acknowledged row can go
+        List<Long> delivered = new ArrayList<>(batch.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (int i = 0; i < batch.size(); i++) {
+            RideEventOutbox row = batch.get(i);
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                delivered.add(row.getId());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | TimeoutException e) {
+                log.error("❌ Failed to relay RideEvent [{}] for ride {} (outbox id {})",
+                        row.getEventType(), row.getRideId(), row.getId(), e);
+            }
+        }
+
+        if (!delivered.isEmpty()) {
+            outboxRepository.deleteByIds(delivered);
+            log.debug("📤 Relayed {} ride events to {}", delivered.size(), topic);
+        }
+        return delivered.size() == batch.size() ? batch.size() : 0;
+    }
+}
@@ -1,36 +1,44 @@
 package com.gocomet.ridehailing.ride.event;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gocomet.ridehailing.common.event.RideEvent;
+import com.gocomet.ridehailing.ride.model.RideEventOutbox;
+import com.gocomet.ridehailing.ride.repository.RideEventOutboxRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.UUID;
 
 /**
- * Publishes ride state-change events to the "ride-events" Kafka topic.
+ * Records ride state-change events for the "ride-events" Kafka topic.
  *
- * KEY = rideId — guarantees all events for a ride land in the same partition
- * and are processed in order by consumers.
+ * Events are not sent from here: each one is written to the ride_event_outbox
+ * table in the caller's transaction, so it commits or rolls back together with
+ * the state change, and the request path never waits on the broker.
+ * RideEventOutboxRelay drains the table to Kafka.
  *
- * acks=all (configured in application.properties) ensures strong durability
- * for these critical business events.
+ * KEY = rideId — guarantees all events for a ride land in the same partition.
+ * The relay sends a ride's events one at a time in relay_order (insert
+ * order), so they reach that partition, and consumers, in commit order.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class RideEventProducer {
 
-    private final KafkaTemplate<String, RideEvent> kafkaTemplate;
+    private final RideEventOutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
 
-    @Value("${app.kafka.topics.ride-events}")
-    private String topic;
+    public void publishRideRequested(UUID rideId, UUID riderId, double pickupLat, double pickupLng) {
+        publish(RideEvent.requested(rideId, riderId, pickupLat, pickupLng));
+    }
 
-    public void publishRideRequested(UUID rideId, UUID riderId) {
-        publish(RideEvent.requested(rideId, riderId));
+    public void publishDriverOffered(UUID rideId, UUID riderId, UUID driverId) {
+        publish(RideEvent.driverOffered(rideId, riderId, driverId));
     }
 
     public void publishDriverAssigned(UUID rideId, UUID riderId, UUID driverId) {
@@ -54,20 +62,34 @@ public class RideEventProducer {
         publish(RideEvent.noDrivers(rideId, riderId));
     }
 
+    /**
+     * Queue many events in one batched insert (bulk state changes such as
+     * the expiry sweep).
+     */
+    public void publishAll(List<RideEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        outboxRepository.saveAll(events.stream().map(this::toOutbox).toList());
+        log.debug("Queued {} RideEvents in the outbox", events.size());
+    }
+
     private void publish(RideEvent event) {
-        String key = event.getRideId().toString();
-        kafkaTemplate.send(topic, key, event)
-                .whenComplete((result, ex) -> {
-                    if (ex != null) {
-                        log.error("❌ Failed to publish RideEvent [{}] for ride {}",
-                                event.getEventType(), event.getRideId(), ex);
-                    } else {
-                        log.info("📤 Published RideEvent [{}] for ride {} → partition {}, offset {}",
-                                event.getEventType(),
-                                event.getRideId(),
-                                result.getRecordMetadata().partition(),
-                                result.getRecordMetadata().offset());
-                    }
-                });
+        outboxRepository.save(toOutbox(event));
+        log.debug("Queued RideEvent [{}] for ride {} in the outbox", event.getEventType(), event.getRideId());
+    }
+
+    private RideEventOutbox toOutbox(RideEvent event) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialise RideEvent " + event.getEventType(), e);
+        }
+        return RideEventOutbox.builder()
+                .rideId(event.getRideId())
+                .eventType(event.getEventType().name())
+                .payload(payload)
+                .build();
     }
 }
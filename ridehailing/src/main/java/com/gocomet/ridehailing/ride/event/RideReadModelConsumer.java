@@ -0,0 +1,40 @@
+package com.gocomet.ridehailing.ride.event;
+
+import com.gocomet.ridehailing.common.event.RideEvent;
+import com.gocomet.ridehailing.ride.service.RideService;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.AbstractConsumerSeekAware;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+/**
+ * Keeps the ride status read model current from ride-events.
+ *
+ * Consumer group: "ride-read-model-{app.instance-id}" — one group per
+ * instance, since every node caches the rides polled on it. The id is stable,
+ * so a restart reuses its group instead of leaving one behind. Always starts
+ * from the end of each partition, committed offsets or not: the read model
+ * is empty after a restart and loads on demand, so history has nothing to add.
+ */
+@Service
+@RequiredArgsConstructor
+public class RideReadModelConsumer extends AbstractConsumerSeekAware {
+
+    private final RideService rideService;
+
+    @KafkaListener(topics = "${app.kafka.topics.ride-events}", groupId = "ride-read-model-${app.instance-id}",
+            properties = "auto.offset.reset=latest")
+    public void consume(@Payload RideEvent event) {
+        rideService.refreshRideView(event.getRideId());
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        super.onPartitionsAssigned(assignments, callback);
+        callback.seekToEnd(assignments.keySet());
+    }
+}
@@ -2,6 +2,7 @@ package com.gocomet.ridehailing.ride.model;
 
 import com.gocomet.ridehailing.driver.model.Driver;
 import com.gocomet.ridehailing.driver.model.VehicleType;
+import com.gocomet.ridehailing.payment.model.PaymentMethod;
 import com.gocomet.ridehailing.rider.model.Rider;
 import jakarta.persistence.*;
 import lombok.*;
@@ -14,9 +15,9 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "rides", indexes = {
-        @Index(name = "idx_rides_rider_id", columnList = "rider_id"),
+        @Index(name = "idx_rides_rider_created", columnList = "rider_id, created_at, id"),
         @Index(name = "idx_rides_rider_status", columnList = "rider_id, status"),
-        @Index(name = "idx_rides_status", columnList = "status"),
+        @Index(name = "idx_rides_status_updated", columnList = "status, updated_at"),
         @Index(name = "idx_rides_idempotency", columnList = "idempotency_key", unique = true)
 })
 @Getter
@@ -66,6 +67,15 @@ public class Ride {
     @Column(name = "estimated_fare", precision = 10, scale = 2)
     private BigDecimal estimatedFare;
 
+    // Charged automatically when the trip ends (null on rows that predate it)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_method")
+    private PaymentMethod paymentMethod;
+
+    // Last transition folded into this row (see RideStateMachine); null on rows that predate it
+    @Column(name = "state_seq")
+    private Integer stateSeq;
+
     @Column(name = "idempotency_key", unique = true)
     private String idempotencyKey;
 
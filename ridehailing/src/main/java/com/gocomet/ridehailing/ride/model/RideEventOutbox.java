@@ -0,0 +1,54 @@
+package com.gocomet.ridehailing.ride.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A ride event waiting to be relayed to Kafka (transactional outbox).
+ *
+ * Written in the same transaction as the state change it describes and
+ * deleted once the relay has it acknowledged by the broker. Ids come from a
+ * pooled sequence (50 per round trip) so inserts can be JDBC-batched.
+ *
+ * Pooled ids are handed out in blocks per instance, so they don't follow
+ * insert order. relay_order does: Postgres assigns it from its own sequence
+ * as the row is inserted, and the relay sends a ride's rows in that order.
+ */
+@Entity
+@Table(name = "ride_event_outbox", indexes = {
+        @Index(name = "idx_ride_event_outbox_relay_order", columnList = "relay_order"),
+        @Index(name = "idx_ride_event_outbox_ride_order", columnList = "ride_id, relay_order")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RideEventOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ride_event_outbox_seq")
+    @SequenceGenerator(name = "ride_event_outbox_seq", sequenceName = "ride_event_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    // Assigned by the database on insert — never written by Hibernate
+    @Column(name = "relay_order", insertable = false, updatable = false, columnDefinition = "bigserial")
+    private Long relayOrder;
+
+    @Column(name = "ride_id", nullable = false)
+    private UUID rideId;
+
+    @Column(name = "event_type", nullable = false, length = 32)
+    private String eventType;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
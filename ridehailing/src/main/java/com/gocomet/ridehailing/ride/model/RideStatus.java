@@ -5,6 +5,7 @@ public enum RideStatus {
     MATCHING,
     MATCHED,
     ACCEPTED,
+    COMPLETED,
     CANCELLED,
     EXPIRED,
     NO_DRIVERS_AVAILABLE
@@ -0,0 +1,54 @@
+package com.gocomet.ridehailing.ride.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One ride state transition — an append-only log entry.
+ *
+ * seq numbers a ride's transitions 1, 2, 3… after the state held on the rides
+ * row (rides.state_seq). The unique (ride_id, seq) index is the concurrency
+ * control: two writers that both saw seq n can't both append n + 1.
+ */
+@Entity
+@Table(name = "ride_transitions", indexes = {
+        @Index(name = "idx_ride_transitions_ride_seq", columnList = "ride_id, seq", unique = true)
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RideTransition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ride_transitions_seq")
+    @SequenceGenerator(name = "ride_transitions_seq", sequenceName = "ride_transitions_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "ride_id", nullable = false)
+    private UUID rideId;
+
+    @Column(nullable = false)
+    private Integer seq;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "from_status", nullable = false)
+    private RideStatus fromStatus;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "to_status", nullable = false)
+    private RideStatus toStatus;
+
+    // Offered driver for MATCHED, the ride's driver for ACCEPTED / COMPLETED
+    @Column(name = "driver_id")
+    private UUID driverId;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
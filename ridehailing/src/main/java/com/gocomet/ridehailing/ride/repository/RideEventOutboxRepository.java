@@ -0,0 +1,35 @@
+package com.gocomet.ridehailing.ride.repository;
+
+import com.gocomet.ridehailing.ride.model.RideEventOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RideEventOutboxRepository extends JpaRepository<RideEventOutbox, Long> {
+
+    /**
+     * The oldest pending event of each ride, oldest first. A ride's later
+     * events aren't eligible until its earlier one is deleted, so one ride
+     * never has two events in flight — not within a batch, and not across
+     * relays (a row locked by another relay is skipped, and still hides the
+     * ride's later rows).
+     */
+    @Query(value = """
+            SELECT * FROM ride_event_outbox o
+            WHERE NOT EXISTS (SELECT 1 FROM ride_event_outbox e
+                              WHERE e.ride_id = o.ride_id AND e.relay_order < o.relay_order)
+            ORDER BY o.relay_order
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<RideEventOutbox> lockNextBatch(@Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "DELETE FROM ride_event_outbox WHERE id IN (:ids)", nativeQuery = true)
+    int deleteByIds(@Param("ids") List<Long> ids);
+}
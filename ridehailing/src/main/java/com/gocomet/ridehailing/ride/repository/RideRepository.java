@@ -1,10 +1,15 @@
 package com.gocomet.ridehailing.ride.repository;
 
+import com.gocomet.ridehailing.ride.dto.RideHistoryItem;
 import com.gocomet.ridehailing.ride.model.Ride;
-import com.gocomet.ridehailing.ride.model.RideStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -12,6 +17,91 @@ import java.util.UUID;
 @Repository
 public interface RideRepository extends JpaRepository<Ride, UUID> {
     Optional<Ride> findByIdempotencyKey(String idempotencyKey);
-    List<Ride> findByRiderIdAndStatusIn(UUID riderId, List<RideStatus> statuses);
-    boolean existsByRiderIdAndStatusIn(UUID riderId, List<RideStatus> statuses);
+
+    // Snapshot written by RideStateMachine (ACCEPTED or terminal) — one UPDATE, no read-modify-write
+    @Modifying
+    @Query(value = "UPDATE rides SET status = :status, state_seq = :seq, updated_at = now() WHERE id = :id",
+            nativeQuery = true)
+    int writeSnapshot(@Param("id") UUID id, @Param("status") String status, @Param("seq") int seq);
+
+    @Modifying
+    @Query(value = "UPDATE rides SET status = :status, assigned_driver_id = :driverId, state_seq = :seq, "
+            + "updated_at = now() WHERE id = :id", nativeQuery = true)
+    int writeSnapshot(@Param("id") UUID id, @Param("status") String status,
+                      @Param("driverId") UUID driverId, @Param("seq") int seq);
+
+    /**
+     * A ride expired by expireOverdue, with the state it expired from.
+     */
+    interface ExpiredRide {
+        UUID getId();
+
+        UUID getRiderId();
+
+        UUID getDriverId();
+
+        String getFromStatus();
+
+        Integer getSeq();
+    }
+
+    /**
+     * Expire up to :limit rides whose last transition is older than its
+     * timeout (MATCHED: offerCutoff; REQUESTED/MATCHING: matchingCutoff) in
+     * one statement. Candidates come off idx_rides_status_updated — rows
+     * awaiting acceptance keep their insert-time updated_at, which is never
+     * later than their last transition, so scanCutoff (the later cutoff) is a
+     * safe pre-filter. Accepted rides are snapshotted as ACCEPTED and never
+     * reach the transition lookup.
+     * Rows locked by another sweeper are skipped. The caller appends the
+     * EXPIRED transitions (seq returned here) in the same transaction.
+     */
+    @Query(value = """
+            WITH overdue AS (
+                SELECT r.id,
+                       COALESCE(t.seq, r.state_seq, 0) AS seq,
+                       COALESCE(t.to_status, r.status) AS from_status,
+                       COALESCE(t.driver_id, r.assigned_driver_id) AS driver_id
+                FROM rides r
+                LEFT JOIN LATERAL (
+                    SELECT rt.seq, rt.to_status, rt.driver_id, rt.created_at
+                    FROM ride_transitions rt
+                    WHERE rt.ride_id = r.id
+                    ORDER BY rt.seq DESC
+                    LIMIT 1
+                ) t ON TRUE
+                WHERE r.status IN ('REQUESTED', 'MATCHING', 'MATCHED')
+                  AND r.updated_at < :scanCutoff
+                  AND ((COALESCE(t.to_status, r.status) = 'MATCHED'
+                            AND COALESCE(t.created_at, r.updated_at) < :offerCutoff)
+                    OR (COALESCE(t.to_status, r.status) IN ('REQUESTED', 'MATCHING')
+                            AND COALESCE(t.created_at, r.updated_at) < :matchingCutoff))
+                ORDER BY r.updated_at
+                LIMIT :limit
+                FOR UPDATE OF r SKIP LOCKED
+            )
+            UPDATE rides r
+            SET status = 'EXPIRED', state_seq = o.seq + 1, updated_at = now()
+            FROM overdue o
+            WHERE r.id = o.id
+            RETURNING r.id AS "id", r.rider_id AS "riderId", o.driver_id AS "driverId",
+                      o.from_status AS "fromStatus", r.state_seq AS "seq"
+            """, nativeQuery = true)
+    List<ExpiredRide> expireOverdue(@Param("scanCutoff") LocalDateTime scanCutoff,
+                                    @Param("offerCutoff") LocalDateTime offerCutoff,
+                                    @Param("matchingCutoff") LocalDateTime matchingCutoff,
+                                    @Param("limit") int limit);
+
+    String HISTORY_SELECT = "SELECT new com.gocomet.ridehailing.ride.dto.RideHistoryItem("
+            + "r.id, r.status, r.vehicleTier, r.pickupLat, r.pickupLng, r.destinationLat, r.destinationLng, "
+            + "r.estimatedFare, r.assignedDriver.id, r.createdAt, r.stateSeq) FROM Ride r WHERE r.rider.id = :riderId ";
+
+    // Rider history, newest first — seeks on idx_rides_rider_created, never OFFSET
+    @Query(HISTORY_SELECT + "ORDER BY r.createdAt DESC, r.id DESC")
+    List<RideHistoryItem> findHistory(@Param("riderId") UUID riderId, Limit limit);
+
+    @Query(HISTORY_SELECT + "AND (r.createdAt, r.id) < (:createdAt, :id) ORDER BY r.createdAt DESC, r.id DESC")
+    List<RideHistoryItem> findHistoryAfter(@Param("riderId") UUID riderId,
+                                           @Param("createdAt") LocalDateTime createdAt,
+                                           @Param("id") UUID id, Limit limit);
 }
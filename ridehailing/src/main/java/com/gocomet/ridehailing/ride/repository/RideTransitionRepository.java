@@ -0,0 +1,13 @@
+package com.gocomet.ridehailing.ride.repository;
+
+import com.gocomet.ridehailing.ride.model.RideTransition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface RideTransitionRepository extends JpaRepository<RideTransition, Long> {
+    List<RideTransition> findByRideIdAndSeqGreaterThanOrderBySeq(UUID rideId, Integer seq);
+}
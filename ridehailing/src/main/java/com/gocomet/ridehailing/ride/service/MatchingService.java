@@ -6,6 +6,7 @@ import com.gocomet.ridehailing.driver.model.DriverStatus;
 import com.gocomet.ridehailing.driver.repository.DriverRepository;
 import com.gocomet.ridehailing.driver.service.LocationService;
 import com.gocomet.ridehailing.notification.service.NotificationService;
+import com.gocomet.ridehailing.ride.event.RideEventProducer;
 import com.gocomet.ridehailing.ride.model.*;
 import com.gocomet.ridehailing.ride.repository.RideAssignmentRepository;
 import com.gocomet.ridehailing.ride.repository.RideRepository;
@@ -13,8 +14,11 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -29,6 +33,10 @@ public class MatchingService {
     private final RideAssignmentRepository rideAssignmentRepository;
     private final DriverRepository driverRepository;
     private final NotificationService notificationService;
+    private final RideGuardService rideGuardService;
+    private final RideEventProducer rideEventProducer;
+    private final OfferInboxService offerInboxService;
+    private final RideStateMachine rideStateMachine;
 
     private static final double SEARCH_RADIUS_KM = 5.0;
     private static final int MAX_ASSIGNMENT_ATTEMPTS = 3;
@@ -40,19 +48,24 @@ public class MatchingService {
      * 2. Lock the nearest driver (prevent double-assignment)
      * 3. Create a ride_assignment record
      * 4. Notify the driver
+     *
+     * Takes the managed ride and returns it; the post-match status is in
+     * RideStateMachine, so callers need no reload.
      */
     @Transactional
-    public void findAndAssignDriver(UUID rideId) {
-        Ride ride = rideRepository.findById(rideId)
-                .orElseThrow(() -> new ResourceNotFoundException("Ride", "id", rideId));
-
-        if (ride.getStatus() != RideStatus.REQUESTED && ride.getStatus() != RideStatus.MATCHING) {
-            log.warn("Ride {} is in status {}, cannot match", rideId, ride.getStatus());
-            return;
+    public Ride findAndAssignDriver(Ride ride) {
+        UUID rideId = ride.getId();
+        RideStatus status = rideStateMachine.current(ride).status();
+        if (status != RideStatus.REQUESTED && status != RideStatus.MATCHING) {
+            log.warn("Ride {} is in status {}, cannot match", rideId, status);
+            return ride;
         }
 
-        ride.setStatus(RideStatus.MATCHING);
-        rideRepository.save(ride);
+        // A ride that was never offered has no assignments to skip
+        boolean offeredBefore = status == RideStatus.MATCHING;
+        if (!offeredBefore) {
+            rideStateMachine.transition(ride, RideStatus.MATCHING, null);
+        }
 
         // Find nearby drivers from Redis
         List<UUID> nearbyDrivers = locationService.findNearbyDrivers(
@@ -64,16 +77,14 @@ public class MatchingService {
 
         if (nearbyDrivers.isEmpty()) {
             log.warn("No nearby drivers found for ride {}", rideId);
-            ride.setStatus(RideStatus.NO_DRIVERS_AVAILABLE);
-            rideRepository.save(ride);
-            notifyRiderNoDrivers(ride);
-            return;
+            markNoDrivers(ride);
+            return ride;
         }
 
         // Try to assign the nearest available driver
         for (UUID driverId : nearbyDrivers) {
             // Check if we already offered this ride to this driver
-            if (rideAssignmentRepository.existsByRideIdAndDriverId(rideId, driverId)) {
+            if (offeredBefore && rideAssignmentRepository.existsByRideIdAndDriverId(rideId, driverId)) {
                 continue;
             }
 
@@ -93,19 +104,22 @@ public class MatchingService {
                         .build();
                 rideAssignmentRepository.save(assignment);
 
-                ride.setStatus(RideStatus.MATCHED);
-                rideRepository.save(ride);
-
-                // Notify driver about the ride offer
-                notificationService.notifyDriver(driverId, "RIDE_OFFER", Map.of(
-                        "rideId", rideId.toString(),
-                        "pickupLat", ride.getPickupLat(),
-                        "pickupLng", ride.getPickupLng(),
-                        "destinationLat", ride.getDestinationLat(),
-                        "destinationLng", ride.getDestinationLng(),
-                        "vehicleTier", ride.getVehicleTier().name(),
-                        "estimatedFare", ride.getEstimatedFare() != null ? ride.getEstimatedFare().toString() : "N/A"
-                ));
+                rideStateMachine.transition(ride, RideStatus.MATCHED, driverId);
+                rideEventProducer.publishDriverOffered(rideId, ride.getRider().getId(), driverId);
+
+                // Once committed: put the offer in the driver's inbox, then push it with the inbox version
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        Map<String, Object> offer = offerFor(ride, assignment);
+                        try {
+                            offer.put("inboxVersion", offerInboxService.add(driverId, rideId, offer));
+                        } catch (Exception e) {
+                            log.error("Failed to add ride {} to driver {} offer inbox", rideId, driverId, e);
+                        }
+                        notificationService.notifyDriver(driverId, "RIDE_OFFER", offer);
+                    }
+                });
 
                 // Notify rider that a driver was found
                 notificationService.notifyRider(ride.getRider().getId(), "DRIVER_MATCHED", Map.of(
@@ -115,15 +129,14 @@ public class MatchingService {
                 ));
 
                 log.info("Ride {} matched with driver {}", rideId, driverId);
-                return;
+                return ride;
             }
         }
 
         // If no driver could be locked, mark as no drivers available
         log.warn("Could not lock any driver for ride {}", rideId);
-        ride.setStatus(RideStatus.NO_DRIVERS_AVAILABLE);
-        rideRepository.save(ride);
-        notifyRiderNoDrivers(ride);
+        markNoDrivers(ride);
+        return ride;
     }
 
     /**
@@ -138,6 +151,7 @@ public class MatchingService {
         assignment.setStatus(AssignmentStatus.DECLINED);
         assignment.setRespondedAt(LocalDateTime.now());
         rideAssignmentRepository.save(assignment);
+        offerInboxService.remove(driverId, rideId);
 
         // Unlock the driver
         locationService.unlockDriver(driverId);
@@ -147,10 +161,34 @@ public class MatchingService {
 
         Ride ride = rideRepository.findById(rideId)
                 .orElseThrow(() -> new ResourceNotFoundException("Ride", "id", rideId));
-        ride.setStatus(RideStatus.MATCHING);
-        rideRepository.save(ride);
+        rideStateMachine.transition(ride, RideStatus.MATCHING, null);
+
+        findAndAssignDriver(ride);
+    }
 
-        findAndAssignDriver(rideId);
+    // Same shape as GET /v1/drivers/{id}/pending-offers entries
+    private static Map<String, Object> offerFor(Ride ride, RideAssignment assignment) {
+        Map<String, Object> offer = new LinkedHashMap<>();
+        offer.put("type", "RIDE_OFFER");
+        offer.put("rideId", ride.getId().toString());
+        offer.put("riderId", ride.getRider().getId().toString());
+        offer.put("pickupLat", ride.getPickupLat());
+        offer.put("pickupLng", ride.getPickupLng());
+        offer.put("destinationLat", ride.getDestinationLat());
+        offer.put("destinationLng", ride.getDestinationLng());
+        offer.put("vehicleTier", ride.getVehicleTier().name());
+        offer.put("estimatedFare", ride.getEstimatedFare());
+        offer.put("surgeMultiplier", ride.getSurgeMultiplier());
+        offer.put("assignmentStatus", "OFFERED");
+        offer.put("offeredAt", String.valueOf(assignment.getOfferedAt()));
+        return offer;
+    }
+
+    private void markNoDrivers(Ride ride) {
+        rideStateMachine.transition(ride, RideStatus.NO_DRIVERS_AVAILABLE, null);
+        rideGuardService.releaseActiveRide(ride.getRider().getId(), ride.getId());
+        rideEventProducer.publishNoDrivers(ride.getId(), ride.getRider().getId());
+        notifyRiderNoDrivers(ride);
     }
 
     private void notifyRiderNoDrivers(Ride ride) {
@@ -0,0 +1,193 @@
+package com.gocomet.ridehailing.ride.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-driver inbox of pending ride offers in Redis.
+ *
+ * driver:offers:{driverId} is a hash of rideId → "expiresAtMillis|offer JSON"
+ * plus a "_v" field counting changes. Offers are written when MatchingService
+ * creates an assignment and removed on accept, decline or cancel; an offer
+ * past its expiry (the driver lock TTL) is dropped by the next read. Every
+ * change bumps _v.
+ *
+ * Reading the inbox is one scripted call that returns the version and the
+ * pre-serialised offers — no Postgres, no per-offer entity loading. The
+ * version also travels on every RIDE_OFFER WebSocket message, so the driver
+ * app only re-reads the inbox when it sees a gap.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OfferInboxService {
+
+    private static final String INBOX_PREFIX = "driver:offers:";
+
+    // KEYS[1] = inbox, ARGV[1] = rideId, ARGV[2] = offer JSON, ARGV[3] = offer ttl ms, ARGV[4] = key ttl s
+    private static final RedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>("""
+            local now = redis.call('TIME')
+            local nowMs = tonumber(now[1]) * 1000 + math.floor(tonumber(now[2]) / 1000)
+            redis.call('HSET', KEYS[1], ARGV[1], (nowMs + tonumber(ARGV[3])) .. '|' .. ARGV[2])
+            local version = redis.call('HINCRBY', KEYS[1], '_v', 1)
+            redis.call('EXPIRE', KEYS[1], tonumber(ARGV[4]))
+            return version
+            """, Long.class);
+
+    // KEYS[1] = inbox, ARGV[1] = rideId; returns the version after the removal
+    private static final RedisScript<Long> REMOVE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('HDEL', KEYS[1], ARGV[1]) == 1 then
+                return redis.call('HINCRBY', KEYS[1], '_v', 1)
+            end
+            return tonumber(redis.call('HGET', KEYS[1], '_v') or '0')
+            """, Long.class);
+
+    // KEYS[i] = inbox, ARGV[i] = rideId — REMOVE_SCRIPT over many inboxes
+    private static final RedisScript<Long> REMOVE_ALL_SCRIPT = new DefaultRedisScript<>("""
+            local removed = 0
+            for i = 1, #KEYS do
+                if redis.call('HDEL', KEYS[i], ARGV[i]) == 1 then
+                    redis.call('HINCRBY', KEYS[i], '_v', 1)
+                    removed = removed + 1
+                end
+            end
+            return removed
+            """, Long.class);
+
+    // KEYS[1] = inbox; returns {version, offer JSON...}, dropping expired offers
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> READ_SCRIPT = new DefaultRedisScript<>("""
+            local now = redis.call('TIME')
+            local nowMs = tonumber(now[1]) * 1000 + math.floor(tonumber(now[2]) / 1000)
+            local fields = redis.call('HGETALL', KEYS[1])
+            local offers = {}
+            local version = '0'
+            local expired = 0
+            for i = 1, #fields, 2 do
+                if fields[i] == '_v' then
+                    version = fields[i + 1]
+                else
+                    local sep = string.find(fields[i + 1], '|', 1, true)
+                    if tonumber(string.sub(fields[i + 1], 1, sep - 1)) <= nowMs then
+                        redis.call('HDEL', KEYS[1], fields[i])
+                        expired = expired + 1
+                    else
+                        offers[#offers + 1] = string.sub(fields[i + 1], sep + 1)
+                    end
+                end
+            end
+            if expired > 0 then
+                version = tostring(redis.call('HINCRBY', KEYS[1], '_v', 1))
+            end
+            table.insert(offers, 1, version)
+            return offers
+            """, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.offers.ttl-seconds:20}")
+    private long offerTtlSeconds;
+
+    @Value("${app.offers.inbox-ttl-seconds:3600}")
+    private long inboxTtlSeconds;
+
+    /**
+     * Pending offers as a JSON array, with the inbox version they reflect.
+     */
+    public record Inbox(long version, String offersJson) {
+    }
+
+    /**
+     * Add an offer and return the new inbox version.
+     */
+    public long add(UUID driverId, UUID rideId, Map<String, Object> offer) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(offer);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialise offer for ride " + rideId, e);
+        }
+        Long version = redisTemplate.execute(ADD_SCRIPT, List.of(INBOX_PREFIX + driverId),
+                rideId.toString(), json, String.valueOf(offerTtlSeconds * 1000), String.valueOf(inboxTtlSeconds));
+        return version != null ? version : 0;
+    }
+
+    /**
+     * Remove an offer (accepted, declined or withdrawn). Deferred to after
+     * commit when called inside a transaction.
+     */
+    public void remove(UUID driverId, UUID rideId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeNow(driverId, rideId);
+                }
+            });
+        } else {
+            removeNow(driverId, rideId);
+        }
+    }
+
+    /**
+     * Withdraw many offers (driverId → rideId) in one round trip, immediately.
+     * Callers run this after their transaction has committed.
+     */
+    public void removeAll(Map<UUID, UUID> rideByDriver) {
+        if (rideByDriver.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(rideByDriver.size());
+        String[] rideIds = new String[rideByDriver.size()];
+        for (Map.Entry<UUID, UUID> entry : rideByDriver.entrySet()) {
+            rideIds[keys.size()] = entry.getValue().toString();
+            keys.add(INBOX_PREFIX + entry.getKey());
+        }
+        try {
+            redisTemplate.execute(REMOVE_ALL_SCRIPT, keys, (Object[]) rideIds);
+        } catch (Exception e) {
+            // The offers still expire on their own
+            log.error("Failed to remove {} offers from driver inboxes", keys.size(), e);
+        }
+    }
+
+    public Inbox read(UUID driverId) {
+        @SuppressWarnings("unchecked")
+        List<String> result = redisTemplate.execute(READ_SCRIPT, List.of(INBOX_PREFIX + driverId));
+        if (result == null || result.isEmpty()) {
+            return new Inbox(0, "[]");
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 1; i < result.size(); i++) {
+            if (i > 1) {
+                json.append(',');
+            }
+            json.append(result.get(i));
+        }
+        return new Inbox(Long.parseLong(result.get(0)), json.append(']').toString());
+    }
+
+    private void removeNow(UUID driverId, UUID rideId) {
+        try {
+            redisTemplate.execute(REMOVE_SCRIPT, List.of(INBOX_PREFIX + driverId), rideId.toString());
+        } catch (Exception e) {
+            // The offer still expires on its own
+            log.error("Failed to remove offer for ride {} from driver {} inbox", rideId, driverId, e);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.gocomet.ridehailing.ride.service;
+
+import com.gocomet.ridehailing.common.event.RideEvent;
+import com.gocomet.ridehailing.driver.service.LocationService;
+import com.gocomet.ridehailing.notification.service.NotificationService;
+import com.gocomet.ridehailing.ride.event.RideEventProducer;
+import com.gocomet.ridehailing.ride.model.RideStatus;
+import com.gocomet.ridehailing.ride.model.RideTransition;
+import com.gocomet.ridehailing.ride.repository.RideRepository;
+import com.gocomet.ridehailing.ride.repository.RideRepository.ExpiredRide;
+import com.gocomet.ridehailing.ride.repository.RideTransitionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Expires rides stuck before acceptance — REQUESTED or MATCHING past the
+ * matching timeout, MATCHED past the offer timeout (an ignored offer, or an
+ * instance that crashed mid-match).
+ *
+ * Each chunk is one short transaction: a single UPDATE … RETURNING moves up
+ * to chunk-size rides to EXPIRED (terminal snapshot), then the EXPIRED
+ * transitions and ride events are inserted in JDBC batches. After commit,
+ * the chunk's driver locks, offer inbox entries and active-ride markers are
+ * released with one scripted Redis call each, and riders are notified.
+ *
+ * If a ride transitions concurrently (e.g. the driver accepts as it
+ * expires), the transition append hits the unique (ride_id, seq) index and
+ * the whole chunk rolls back; the next pass re-selects what is still
+ * overdue. If the instance dies between commit and cleanup, the Redis keys
+ * expire on their own TTLs.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RideExpirySweeper {
+
+    private final RideRepository rideRepository;
+    private final RideTransitionRepository transitionRepository;
+    private final RideEventProducer rideEventProducer;
+    private final RideStateMachine rideStateMachine;
+    private final LocationService locationService;
+    private final OfferInboxService offerInboxService;
+    private final RideGuardService rideGuardService;
+    private final NotificationService notificationService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.rides.expiry.matching-timeout-seconds:180}")
+    private long matchingTimeoutSeconds;
+
+    @Value("${app.rides.expiry.offer-timeout-seconds:60}")
+    private long offerTimeoutSeconds;
+
+    @Value("${app.rides.expiry.chunk-size:500}")
+    private int chunkSize;
+
+    @Scheduled(fixedDelayString = "${app.rides.expiry.sweep-interval-ms:30000}")
+    public void sweep() {
+        int total = 0;
+        try {
+            List<ExpiredRide> expired;
+            do {
+                expired = transactionTemplate.execute(status -> expireChunk());
+                if (expired == null || expired.isEmpty()) {
+                    break;
+                }
+                cleanUp(expired);
+                total += expired.size();
+            } while (expired.size() == chunkSize);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Ride expiry chunk raced a concurrent transition — retrying next pass");
+        } catch (Exception e) {
+            log.error("Ride expiry sweep failed — will retry", e);
+        }
+        if (total > 0) {
+            log.info("⏱️ Expired {} stuck rides", total);
+        }
+    }
+
+    private List<ExpiredRide> expireChunk() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime offerCutoff = now.minusSeconds(offerTimeoutSeconds);
+        LocalDateTime matchingCutoff = now.minusSeconds(matchingTimeoutSeconds);
+        LocalDateTime scanCutoff = offerCutoff.isAfter(matchingCutoff) ? offerCutoff : matchingCutoff;
+
+        List<ExpiredRide> expired = rideRepository.expireOverdue(scanCutoff, offerCutoff, matchingCutoff, chunkSize);
+        if (expired.isEmpty()) {
+            return expired;
+        }
+
+        List<RideTransition> transitions = new ArrayList<>(expired.size());
+        List<RideEvent> events = new ArrayList<>(expired.size());
+        for (ExpiredRide ride : expired) {
+            transitions.add(RideTransition.builder()
+                    .rideId(ride.getId())
+                    .seq(ride.getSeq())
+                    .fromStatus(RideStatus.valueOf(ride.getFromStatus()))
+                    .toStatus(RideStatus.EXPIRED)
+                    .driverId(ride.getDriverId())
+                    .build());
+            events.add(RideEvent.expired(ride.getId(), ride.getRiderId(), ride.getDriverId()));
+        }
+        transitionRepository.saveAll(transitions);
+        rideEventProducer.publishAll(events);
+        return expired;
+    }
+
+    // Runs after the chunk has committed
+    private void cleanUp(List<ExpiredRide> expired) {
+        Map<UUID, UUID> rideByOfferedDriver = new HashMap<>();
+        Map<UUID, UUID> rideByRider = new HashMap<>();
+        List<UUID> rideIds = new ArrayList<>(expired.size());
+        for (ExpiredRide ride : expired) {
+            if (RideStatus.MATCHED.name().equals(ride.getFromStatus()) && ride.getDriverId() != null) {
+                rideByOfferedDriver.put(ride.getDriverId(), ride.getId());
+            }
+            rideByRider.put(ride.getRiderId(), ride.getId());
+            rideIds.add(ride.getId());
+        }
+
+        rideStateMachine.evict(rideIds);
+        try {
+            locationService.releaseLocks(rideByOfferedDriver);
+        } catch (Exception e) {
+            // Locks expire on their own
+            log.error("Failed to release {} driver locks for expired rides", rideByOfferedDriver.size(), e);
+        }
+        offerInboxService.removeAll(rideByOfferedDriver);
+        rideGuardService.releaseActiveRides(rideByRider);
+
+        for (ExpiredRide ride : expired) {
+            notificationService.notifyRider(ride.getRiderId(), "RIDE_EXPIRED", Map.of(
+                    "rideId", ride.getId().toString(),
+                    "message", "Your ride request timed out. Please try again."
+            ));
+        }
+    }
+}
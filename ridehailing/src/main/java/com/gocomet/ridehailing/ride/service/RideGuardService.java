@@ -0,0 +1,278 @@
+package com.gocomet.ridehailing.ride.service;
+
+import com.gocomet.ridehailing.common.exception.DuplicateRequestException;
+import com.gocomet.ridehailing.driver.service.LocationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Redis guard in front of ride creation: idempotency keys and the rider's
+ * active-ride marker.
+ *
+ * One scripted call checks and claims both keys with SET NX: a replayed
+ * idempotency key returns the ride it created, a rider whose marker is set
+ * is refused, otherwise both keys are set to a pending claim token. When the
+ * ride commits, the claim is confirmed (both keys then hold the ride id); on
+ * rollback it is released. This replaces the idempotency lookup and the
+ * active-ride EXISTS query that createRide used to run against Postgres.
+ *
+ * The marker is released when the ride leaves the active states (cancelled,
+ * no drivers, trip completed) and expires after active-marker-ttl-seconds as
+ * a backstop. Once a driver accepts, the marker is re-set with the longer
+ * trip-marker-ttl-seconds, so it outlives any trip and still guards the
+ * rider while the trip runs. Releases compare the stored value, so a late
+ * release can never drop the marker of a newer ride.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RideGuardService {
+
+    private static final String IDEMPOTENCY_PREFIX = "ride:idem:";
+    private static final String ACTIVE_RIDE_PREFIX = "rider:active:";
+    private static final String PENDING_PREFIX = "pending:";
+
+    private static final String CLAIMED = "claimed";
+    private static final String REPLAY = "replay:";
+    private static final String BUSY = "busy:";
+
+    // KEYS = [idempotency key,] active marker; ARGV[1] = claim token,
+    // ARGV[2] = idempotency ttl, ARGV[3] = marker ttl
+    private static final RedisScript<String> CLAIM_SCRIPT = new DefaultRedisScript<>("""
+            local marker = KEYS[#KEYS]
+            if #KEYS == 2 then
+                local existing = redis.call('GET', KEYS[1])
+                if existing then
+                    return 'replay:' .. existing
+                end
+            end
+            local active = redis.call('GET', marker)
+            if active then
+                return 'busy:' .. active
+            end
+            if #KEYS == 2 then
+                redis.call('SET', KEYS[1], ARGV[1], 'NX', 'EX', tonumber(ARGV[2]))
+            end
+            redis.call('SET', marker, ARGV[1], 'NX', 'EX', tonumber(ARGV[3]))
+            return 'claimed'
+            """, String.class);
+
+    // Replace ARGV[1] with ARGV[2] in every key that still holds ARGV[1]
+    private static final RedisScript<Long> CONFIRM_SCRIPT = new DefaultRedisScript<>("""
+            local confirmed = 0
+            for i = 1, #KEYS do
+                if redis.call('GET', KEYS[i]) == ARGV[1] then
+                    redis.call('SET', KEYS[i], ARGV[2], 'XX', 'KEEPTTL')
+                    confirmed = confirmed + 1
+                end
+            end
+            return confirmed
+            """, Long.class);
+
+    // Delete every key that still holds ARGV[1]
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            local released = 0
+            for i = 1, #KEYS do
+                if redis.call('GET', KEYS[i]) == ARGV[1] then
+                    released = released + redis.call('DEL', KEYS[i])
+                end
+            end
+            return released
+            """, Long.class);
+
+    // Re-set the marker to ARGV[1] with ttl ARGV[2] if it holds that ride or has lapsed
+    private static final RedisScript<Long> EXTEND_SCRIPT = new DefaultRedisScript<>("""
+            local active = redis.call('GET', KEYS[1])
+            if active and active ~= ARGV[1] then
+                return 0
+            end
+            redis.call('SET', KEYS[1], ARGV[1], 'EX', tonumber(ARGV[2]))
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    // Owns the compare-and-delete script shared by driver locks and active-ride markers
+    private final LocationService locationService;
+
+    @Value("${app.rides.idempotency-ttl-seconds:86400}")
+    private long idempotencyTtlSeconds;
+
+    @Value("${app.rides.active-marker-ttl-seconds:7200}")
+    private long activeMarkerTtlSeconds;
+
+    @Value("${app.rides.trip-marker-ttl-seconds:86400}")
+    private long tripMarkerTtlSeconds;
+
+    /**
+     * Outcome of a claim: either a replay of an existing ride, or a fresh
+     * claim that the caller binds to the ride it creates.
+     */
+    public static final class Claim {
+
+        private final UUID replayRideId;
+        private final List<String> keys;
+        private final String token;
+        private volatile UUID rideId;
+
+        private Claim(UUID replayRideId, List<String> keys, String token) {
+            this.replayRideId = replayRideId;
+            this.keys = keys;
+            this.token = token;
+        }
+
+        public boolean isReplay() {
+            return replayRideId != null;
+        }
+
+        public UUID replayRideId() {
+            return replayRideId;
+        }
+
+        /**
+         * The ride this claim created; confirmed into Redis after commit.
+         */
+        public void bind(UUID rideId) {
+            this.rideId = rideId;
+        }
+    }
+
+    /**
+     * Claim the idempotency key (optional) and the rider's active-ride marker
+     * in one round trip. Must run inside the transaction that creates the
+     * ride: the claim is confirmed after commit and released on rollback.
+     * Throws DuplicateRequestException if the rider already has an active
+     * ride or the same key is still being processed.
+     */
+    public Claim claim(UUID riderId, String idempotencyKey) {
+        List<String> keys = idempotencyKey != null
+                ? List.of(IDEMPOTENCY_PREFIX + idempotencyKey, ACTIVE_RIDE_PREFIX + riderId)
+                : List.of(ACTIVE_RIDE_PREFIX + riderId);
+        String token = PENDING_PREFIX + UUID.randomUUID();
+
+        String result = redisTemplate.execute(CLAIM_SCRIPT, keys, token,
+                String.valueOf(idempotencyTtlSeconds), String.valueOf(activeMarkerTtlSeconds));
+        if (result == null) {
+            throw new IllegalStateException("Ride guard script returned no result");
+        }
+
+        if (result.startsWith(REPLAY)) {
+            String existing = result.substring(REPLAY.length());
+            if (existing.startsWith(PENDING_PREFIX)) {
+                throw new DuplicateRequestException("A ride request with this idempotency key is still being processed");
+            }
+            log.info("Duplicate ride request with idempotency key: {}", idempotencyKey);
+            return new Claim(UUID.fromString(existing), keys, null);
+        }
+        if (result.startsWith(BUSY)) {
+            throw new DuplicateRequestException("Rider already has an active ride");
+        }
+
+        Claim claim = new Claim(null, keys, token);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED && claim.rideId != null) {
+                        redisTemplate.execute(CONFIRM_SCRIPT, claim.keys, claim.token, claim.rideId.toString());
+                    } else {
+                        redisTemplate.execute(RELEASE_SCRIPT, claim.keys, claim.token);
+                    }
+                } catch (Exception e) {
+                    // Pending keys expire on their own; a pending marker blocks the rider until then
+                    log.error("Failed to settle ride guard claim for {}", claim.keys, e);
+                }
+            }
+        });
+        return claim;
+    }
+
+    /**
+     * Release the rider's active-ride marker once the ride is over. Deferred
+     * to after commit when called inside a transaction.
+     */
+    public void releaseActiveRide(UUID riderId, UUID rideId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    release(riderId, rideId);
+                }
+            });
+        } else {
+            release(riderId, rideId);
+        }
+    }
+
+    /**
+     * Hold the rider's active-ride marker for the length of a trip once the
+     * ride is accepted — the pre-acceptance TTL could lapse mid-trip. Also
+     * restores a marker that has already lapsed. Deferred to after commit
+     * when called inside a transaction.
+     */
+    public void holdForTrip(UUID riderId, UUID rideId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    extend(riderId, rideId);
+                }
+            });
+        } else {
+            extend(riderId, rideId);
+        }
+    }
+
+    /**
+     * Release many riders' markers (riderId → rideId) in one round trip,
+     * immediately. Callers run this after their transaction has committed.
+     */
+    public void releaseActiveRides(Map<UUID, UUID> rideByRider) {
+        if (rideByRider.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(rideByRider.size());
+        String[] rideIds = new String[rideByRider.size()];
+        for (Map.Entry<UUID, UUID> entry : rideByRider.entrySet()) {
+            rideIds[keys.size()] = entry.getValue().toString();
+            keys.add(ACTIVE_RIDE_PREFIX + entry.getKey());
+        }
+        try {
+            locationService.compareAndDelete(keys, rideIds);
+        } catch (Exception e) {
+            log.error("Failed to release {} active-ride markers", keys.size(), e);
+        }
+    }
+
+    private void extend(UUID riderId, UUID rideId) {
+        try {
+            Long held = redisTemplate.execute(EXTEND_SCRIPT, List.of(ACTIVE_RIDE_PREFIX + riderId),
+                    rideId.toString(), String.valueOf(tripMarkerTtlSeconds));
+            if (held == null || held == 0) {
+                log.warn("Active-ride marker for rider {} holds another ride — not extended for ride {}",
+                        riderId, rideId);
+            }
+        } catch (Exception e) {
+            log.error("Failed to extend active-ride marker for rider {} (ride {})", riderId, rideId, e);
+        }
+    }
+
+    private void release(UUID riderId, UUID rideId) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(ACTIVE_RIDE_PREFIX + riderId), rideId.toString());
+        } catch (Exception e) {
+            log.error("Failed to release active-ride marker for rider {} (ride {})", riderId, rideId, e);
+        }
+    }
+}
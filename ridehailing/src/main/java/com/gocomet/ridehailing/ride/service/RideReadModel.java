@@ -0,0 +1,96 @@
+package com.gocomet.ridehailing.ride.service;
+
+import com.gocomet.ridehailing.ride.dto.RideResponse;
+import com.gocomet.ridehailing.ride.model.RideStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory read model of ride status for GET /v1/rides/{id} polling.
+ *
+ * Holds one immutable view per ride that was polled on this instance: the
+ * RideResponse, its version (the ride's transition seq, see RideStateMachine)
+ * and an ETag derived from it. A poll is a map lookup; Postgres is read once when a
+ * ride is first polled and once per state change after that — never per poll.
+ *
+ * RideReadModelConsumer refreshes cached rides (RideService.refreshRideView)
+ * as ride-events arrive, so views trail the database by the outbox relay
+ * delay. A refresh only replaces a view with a newer version, so a slow
+ * loader can't roll a ride back.
+ *
+ * Bounded: terminal rides are kept for terminal-retention-seconds (so the
+ * final status is still served from memory) and then swept; above
+ * max-entries new rides are served from the database without caching.
+ */
+@Service
+@Slf4j
+public class RideReadModel {
+
+    @Value("${app.rides.read-model.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${app.rides.read-model.terminal-retention-seconds:120}")
+    private long terminalRetentionSeconds;
+
+    /**
+     * A cached ride view. expiresAtMillis is Long.MAX_VALUE while the ride is active.
+     */
+    public record View(RideResponse response, long version, String etag, long expiresAtMillis) {
+
+        public boolean terminal() {
+            return expiresAtMillis != Long.MAX_VALUE;
+        }
+    }
+
+    private final Map<UUID, View> views = new ConcurrentHashMap<>();
+
+    public View get(UUID rideId) {
+        return views.get(rideId);
+    }
+
+    public boolean contains(UUID rideId) {
+        return views.containsKey(rideId);
+    }
+
+    /**
+     * Cache a freshly loaded view unless a newer one is already cached.
+     * Returns the view now in force (which callers should serve).
+     */
+    public View put(RideResponse response, long version) {
+        View view = new View(response, version, "\"" + Long.toHexString(version) + "\"",
+                isTerminal(response.getStatus())
+                        ? System.currentTimeMillis() + terminalRetentionSeconds * 1000
+                        : Long.MAX_VALUE);
+
+        if (views.size() >= maxEntries && !views.containsKey(response.getId())) {
+            return view;
+        }
+        return views.merge(response.getId(), view,
+                (cached, fresh) -> fresh.version() >= cached.version() ? fresh : cached);
+    }
+
+    public int size() {
+        return views.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.rides.read-model.sweep-interval-ms:30000}")
+    public void sweepTerminal() {
+        long now = System.currentTimeMillis();
+        int before = views.size();
+        views.values().removeIf(view -> view.expiresAtMillis() <= now);
+        int removed = before - views.size();
+        if (removed > 0) {
+            log.debug("Ride read model: evicted {} finished rides, {} cached", removed, views.size());
+        }
+    }
+
+    private static boolean isTerminal(RideStatus status) {
+        return RideStateMachine.isTerminal(status);
+    }
+}
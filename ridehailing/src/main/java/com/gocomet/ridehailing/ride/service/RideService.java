@@ -1,14 +1,17 @@
 package com.gocomet.ridehailing.ride.service;
 
-import com.gocomet.ridehailing.common.exception.DuplicateRequestException;
 import com.gocomet.ridehailing.common.exception.InvalidStateTransitionException;
+import com.gocomet.ridehailing.common.pagination.Cursor;
+import com.gocomet.ridehailing.common.pagination.CursorPage;
 import com.gocomet.ridehailing.common.exception.ResourceNotFoundException;
 import com.gocomet.ridehailing.driver.model.Driver;
 import com.gocomet.ridehailing.driver.model.DriverStatus;
 import com.gocomet.ridehailing.driver.repository.DriverRepository;
 import com.gocomet.ridehailing.driver.service.LocationService;
 import com.gocomet.ridehailing.notification.service.NotificationService;
+import com.gocomet.ridehailing.pricing.service.FareQuoteService;
 import com.gocomet.ridehailing.pricing.service.SurgePricingService;
+import com.gocomet.ridehailing.ride.dto.RideHistoryItem;
 import com.gocomet.ridehailing.ride.dto.RideRequest;
 import com.gocomet.ridehailing.ride.dto.RideResponse;
 import com.gocomet.ridehailing.ride.event.RideEventProducer;
@@ -16,11 +19,15 @@ import com.gocomet.ridehailing.ride.model.*;
 import com.gocomet.ridehailing.ride.repository.RideAssignmentRepository;
 import com.gocomet.ridehailing.ride.repository.RideRepository;
 import com.gocomet.ridehailing.rider.model.Rider;
-import com.gocomet.ridehailing.rider.repository.RiderRepository;
+import com.gocomet.ridehailing.rider.service.RiderService;
 import com.gocomet.ridehailing.trip.model.Trip;
 import com.gocomet.ridehailing.trip.repository.TripRepository;
+import com.gocomet.ridehailing.trip.service.TripOdometer;
+import com.gocomet.ridehailing.trip.service.TripTracker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -28,9 +35,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -38,61 +43,71 @@ import java.util.stream.Collectors;
 public class RideService {
 
         private final RideRepository rideRepository;
-        private final RiderRepository riderRepository;
+        private final RiderService riderService;
         private final DriverRepository driverRepository;
         private final RideAssignmentRepository rideAssignmentRepository;
         private final TripRepository tripRepository;
         private final MatchingService matchingService;
         private final SurgePricingService surgePricingService;
+        private final FareQuoteService fareQuoteService;
         private final LocationService locationService;
         private final NotificationService notificationService;
         private final RideEventProducer rideEventProducer;
+        private final TripOdometer tripOdometer;
+        private final TripTracker tripTracker;
+        private final RideGuardService rideGuardService;
+        private final RideReadModel rideReadModel;
+        private final OfferInboxService offerInboxService;
+        private final RideStateMachine rideStateMachine;
+
+        @Value("${app.history.max-page-size:100}")
+        private int maxHistoryPageSize;
 
         /**
          * Create a new ride request.
-         * 1. Validate rider exists
-         * 2. Check idempotency
-         * 3. Check rider doesn't have an active ride
-         * 4. Calculate surge and estimated fare
-         * 5. Save ride
-         * 6. Trigger matching
+         * 1. Validate rider exists (cached)
+         * 2. Claim the idempotency key and the rider's active-ride marker in Redis
+         *    (replays return the existing ride, double-booking is refused)
+         * 3. Calculate surge and estimated fare (or take them from a verified quote token)
+         * 4. Save ride
+         * 5. Trigger matching and respond with the ride it returns
          */
         @Transactional
         public RideResponse createRide(RideRequest request) {
-                // Idempotency check
-                if (request.getIdempotencyKey() != null) {
-                        Optional<Ride> existing = rideRepository.findByIdempotencyKey(request.getIdempotencyKey());
-                        if (existing.isPresent()) {
-                                log.info("Duplicate ride request with idempotency key: {}",
-                                                request.getIdempotencyKey());
-                                return toResponse(existing.get());
-                        }
-                }
-
-                // Validate rider
-                Rider rider = riderRepository.findById(request.getRiderId())
-                                .orElseThrow(() -> new ResourceNotFoundException("Rider", "id", request.getRiderId()));
+                // Validate rider — existence is cached, the reference is not loaded
+                Rider rider = riderService.getRiderReference(request.getRiderId());
 
-                // Check for active rides (prevent double-booking)
-                List<RideStatus> activeStatuses = List.of(
-                                RideStatus.REQUESTED, RideStatus.MATCHING, RideStatus.MATCHED, RideStatus.ACCEPTED);
-                if (rideRepository.existsByRiderIdAndStatusIn(rider.getId(), activeStatuses)) {
-                        throw new DuplicateRequestException("Rider already has an active ride");
+                // Idempotency + active-ride check in one Redis round trip
+                RideGuardService.Claim claim = rideGuardService.claim(rider.getId(), request.getIdempotencyKey());
+                if (claim.isReplay()) {
+                        return getRide(claim.replayRideId());
                 }
 
-                // Calculate surge
-                BigDecimal surge = surgePricingService.getSurgeMultiplier(
-                                request.getPickupLat(), request.getPickupLng());
+                BigDecimal surge;
+                BigDecimal estimatedFare;
+                if (request.getQuoteToken() != null) {
+                        // Quoted price — verify the token, no surge lookup or fare computation
+                        FareQuoteService.Quote quote = fareQuoteService.verify(request.getQuoteToken(),
+                                        request.getVehicleTier(),
+                                        request.getPickupLat(), request.getPickupLng(),
+                                        request.getDestinationLat(), request.getDestinationLng());
+                        surge = quote.surgeMultiplier();
+                        estimatedFare = quote.fare();
+                } else {
+                        // Calculate surge
+                        surge = surgePricingService.getSurgeMultiplier(
+                                        request.getPickupLat(), request.getPickupLng());
+
+                        // Estimate fare
+                        estimatedFare = surgePricingService.estimateFare(
+                                        request.getPickupLat(), request.getPickupLng(),
+                                        request.getDestinationLat(), request.getDestinationLng(),
+                                        request.getVehicleTier(), surge);
+                }
 
                 // Record demand for surge calculation
                 surgePricingService.recordDemand(request.getPickupLat(), request.getPickupLng());
 
-                // Estimate fare
-                BigDecimal estimatedFare = surgePricingService.estimateFare(
-                                request.getPickupLat(), request.getPickupLng(),
-                                request.getDestinationLat(), request.getDestinationLng(),
-                                request.getVehicleTier().name(), surge);
-
                 // Create ride
                 Ride ride = Ride.builder()
                                 .rider(rider)
@@ -102,35 +117,65 @@ public class RideService {
                                 .destinationLng(request.getDestinationLng())
                                 .vehicleTier(request.getVehicleTier())
                                 .status(RideStatus.REQUESTED)
+                                .stateSeq(0)
                                 .surgeMultiplier(surge)
                                 .estimatedFare(estimatedFare)
+                                .paymentMethod(request.getPaymentMethod())
                                 .idempotencyKey(request.getIdempotencyKey() != null
                                                 ? request.getIdempotencyKey()
                                                 : UUID.randomUUID().toString())
                                 .build();
 
                 ride = rideRepository.save(ride);
+                rideStateMachine.register(ride);
+                claim.bind(ride.getId());
                 log.info("Ride {} created for rider {}", ride.getId(), rider.getId());
 
                 // Publish REQUESTED event to Kafka
-                rideEventProducer.publishRideRequested(ride.getId(), rider.getId());
+                rideEventProducer.publishRideRequested(ride.getId(), rider.getId(),
+                                ride.getPickupLat(), ride.getPickupLng());
 
                 // Trigger matching (async in production, synchronous here for simplicity)
-                matchingService.findAndAssignDriver(ride.getId());
+                ride = matchingService.findAndAssignDriver(ride);
 
-                // Reload to get updated status after matching
-                ride = rideRepository.findById(ride.getId()).orElse(ride);
-
-                return toResponse(ride);
+                return toResponse(ride, rideStateMachine.current(ride));
         }
 
         /**
          * Get ride status.
          */
         public RideResponse getRide(UUID rideId) {
+                return getRideView(rideId).response();
+        }
+
+        /**
+         * Ride status for polling — served from the read model, loaded from
+         * Postgres only the first time a ride is polled on this instance.
+         */
+        public RideReadModel.View getRideView(UUID rideId) {
+                RideReadModel.View view = rideReadModel.get(rideId);
+                if (view != null) {
+                        return view;
+                }
                 Ride ride = rideRepository.findById(rideId)
                                 .orElseThrow(() -> new ResourceNotFoundException("Ride", "id", rideId));
-                return toResponse(ride);
+                RideStateMachine.State state = rideStateMachine.reload(ride);
+                return rideReadModel.put(toResponse(ride, state), state.seq());
+        }
+
+        /**
+         * Reload a cached ride view after a state change (ride-events consumer).
+         * Rides nobody polled here are skipped — they load on first poll.
+         */
+        @Transactional(readOnly = true)
+        public void refreshRideView(UUID rideId) {
+                if (!rideReadModel.contains(rideId)) {
+                        return;
+                }
+                rideRepository.findById(rideId).ifPresent(ride -> {
+                        RideStateMachine.State state = rideStateMachine.reload(ride);
+                        rideReadModel.put(toResponse(ride, state), state.seq());
+                });
         }
 
         /**
@@ -147,8 +192,9 @@ public class RideService {
                 Ride ride = rideRepository.findById(rideId)
                                 .orElseThrow(() -> new ResourceNotFoundException("Ride", "id", rideId));
 
-                if (ride.getStatus() != RideStatus.MATCHED) {
-                        throw new InvalidStateTransitionException("Ride", ride.getStatus().name(), "ACCEPTED");
+                RideStatus status = rideStateMachine.current(ride).status();
+                if (status != RideStatus.MATCHED) {
+                        throw new InvalidStateTransitionException("Ride", status.name(), "ACCEPTED");
                 }
 
                 // Find and validate the assignment
@@ -169,11 +215,13 @@ public class RideService {
                 assignment.setStatus(AssignmentStatus.ACCEPTED);
                 assignment.setRespondedAt(LocalDateTime.now());
                 rideAssignmentRepository.save(assignment);
+                offerInboxService.remove(driverId, rideId);
+
+                // Update ride — one appended transition, the row itself is not rewritten
+                RideStateMachine.State accepted = rideStateMachine.transition(ride, RideStatus.ACCEPTED, driverId);
 
-                // Update ride
-                ride.setStatus(RideStatus.ACCEPTED);
-                ride.setAssignedDriver(driver);
-                rideRepository.save(ride);
+                // Keep the rider's active-ride marker for the whole trip
+                rideGuardService.holdForTrip(ride.getRider().getId(), rideId);
 
                 // Update driver status
                 driver.setStatus(DriverStatus.ON_TRIP);
@@ -195,6 +243,12 @@ public class RideService {
                                 .build();
                 tripRepository.save(trip);
 
+                // Start the trip odometer — anchored at the pickup point
+                tripOdometer.start(trip.getId(), driverId, ride.getPickupLat(), ride.getPickupLng());
+
+                // Stream the driver's position to the rider until the trip ends
+                tripTracker.start(driverId, ride.getRider().getId(), trip.getId());
+
                 // Publish DRIVER_ASSIGNED and TRIP_STARTED events to Kafka
                 rideEventProducer.publishDriverAssigned(rideId, ride.getRider().getId(), driverId);
                 rideEventProducer.publishTripStarted(rideId, ride.getRider().getId(), driverId);
@@ -210,7 +264,7 @@ public class RideService {
                 log.info("Driver {} accepted ride {}. Trip {} created.", driverId, rideId, trip.getId());
 
                 // Build response with tripId
-                RideResponse response = toResponse(ride);
+                RideResponse response = toResponse(ride, accepted);
                 response.setTripId(trip.getId());
                 return response;
         }
@@ -223,64 +277,71 @@ public class RideService {
                 Ride ride = rideRepository.findById(rideId)
                                 .orElseThrow(() -> new ResourceNotFoundException("Ride", "id", rideId));
 
-                List<RideStatus> cancellableStatuses = List.of(
-                                RideStatus.REQUESTED, RideStatus.MATCHING, RideStatus.MATCHED);
-                if (!cancellableStatuses.contains(ride.getStatus())) {
-                        throw new InvalidStateTransitionException("Ride", ride.getStatus().name(), "CANCELLED");
-                }
+                // Validates REQUESTED / MATCHING / MATCHED → CANCELLED and writes the terminal snapshot
+                RideStateMachine.State before = rideStateMachine.current(ride);
+                RideStateMachine.State cancelled = rideStateMachine.transition(ride, RideStatus.CANCELLED, null);
 
-                // If a driver was matched, unlock them
-                if (ride.getAssignedDriver() != null) {
-                        locationService.unlockDriver(ride.getAssignedDriver().getId());
+                // If a driver was offered the ride, withdraw the offer and unlock them
+                if (before.status() == RideStatus.MATCHED && before.driverId() != null) {
+                        offerInboxService.remove(before.driverId(), rideId);
+                        locationService.unlockDriver(before.driverId());
                 }
 
-                ride.setStatus(RideStatus.CANCELLED);
-                rideRepository.save(ride);
+                rideGuardService.releaseActiveRide(ride.getRider().getId(), rideId);
 
                 // Publish CANCELLED event to Kafka
                 rideEventProducer.publishRideCancelled(rideId, ride.getRider().getId(), "Cancelled by rider");
 
                 log.info("Ride {} cancelled", rideId);
-                return toResponse(ride);
+                return toResponse(ride, cancelled);
         }
 
         /**
-         * Get pending ride offers for a driver.
-         * Returns rides that have been offered to this driver but not yet
-         * accepted/declined.
+         * Get pending ride offers for a driver — one read of the driver's
+         * Redis offer inbox, returned with its version.
          */
-        public List<Map<String, Object>> getPendingOffersForDriver(UUID driverId) {
-                // Validate driver exists
-                Driver driver = driverRepository.findById(driverId)
-                                .orElseThrow(() -> new ResourceNotFoundException("Driver", "id", driverId));
+        public OfferInboxService.Inbox getPendingOffersForDriver(UUID driverId) {
+                return offerInboxService.read(driverId);
+        }
 
-                // Find all OFFERED assignments for this driver
-                List<RideAssignment> pendingAssignments = rideAssignmentRepository
-                                .findByDriverIdAndStatus(driverId, AssignmentStatus.OFFERED);
-
-                // Build response for each pending offer
-                return pendingAssignments.stream()
-                                .map(assignment -> {
-                                        Ride ride = assignment.getRide();
-                                        Map<String, Object> offer = Map.ofEntries(
-                                                        Map.entry("type", "RIDE_OFFER"),
-                                                        Map.entry("rideId", ride.getId().toString()),
-                                                        Map.entry("riderId", ride.getRider().getId().toString()),
-                                                        Map.entry("pickupLat", ride.getPickupLat()),
-                                                        Map.entry("pickupLng", ride.getPickupLng()),
-                                                        Map.entry("destinationLat", ride.getDestinationLat()),
-                                                        Map.entry("destinationLng", ride.getDestinationLng()),
-                                                        Map.entry("vehicleTier", ride.getVehicleTier().name()),
-                                                        Map.entry("estimatedFare", ride.getEstimatedFare()),
-                                                        Map.entry("surgeMultiplier", ride.getSurgeMultiplier()),
-                                                        Map.entry("assignmentStatus", "OFFERED"),
-                                                        Map.entry("offeredAt", assignment.getOfferedAt().toString()));
-                                        return offer;
-                                })
-                                .collect(Collectors.toList());
+        /**
+         * A rider's rides, newest first, one keyset page at a time. Rows are
+         * projected straight into RideHistoryItem; a rider's active ride (at
+         * most one) gets its live status from the state machine, folded from
+         * the row's state_seq.
+         */
+        @Transactional(readOnly = true)
+        public CursorPage<RideHistoryItem> getRideHistory(UUID riderId, String cursor, int limit) {
+                if (limit < 1 || limit > maxHistoryPageSize) {
+                        throw new IllegalArgumentException("limit must be between 1 and " + maxHistoryPageSize);
+                }
+                riderService.getRiderReference(riderId);
+
+                // One extra row tells us whether there is a next page
+                List<RideHistoryItem> rows;
+                if (cursor == null || cursor.isBlank()) {
+                        rows = rideRepository.findHistory(riderId, Limit.of(limit + 1));
+                } else {
+                        Cursor after = Cursor.decode(cursor);
+                        rows = rideRepository.findHistoryAfter(riderId, after.createdAt(), after.id(), Limit.of(limit + 1));
+                }
+
+                for (RideHistoryItem item : rows) {
+                        if (!RideStateMachine.isTerminal(item.getStatus())) {
+                                // The row's snapshot wins over a cache entry older than it
+                                RideStateMachine.State state = rideStateMachine.current(item.getId(),
+                                                item.getStatus(), item.getAssignedDriverId(), item.getStateSeq());
+                                item.setStatus(state.status());
+                                if (state.status() == RideStatus.ACCEPTED) {
+                                        item.setAssignedDriverId(state.driverId());
+                                }
+                        }
+                }
+                return CursorPage.of(rows, limit, item -> new Cursor(item.getCreatedAt(), item.getId()));
         }
 
-        private RideResponse toResponse(Ride ride) {
+        // Status and driver come from the state machine, not the (snapshot-only) row
+        private RideResponse toResponse(Ride ride, RideStateMachine.State state) {
                 RideResponse.RideResponseBuilder builder = RideResponse.builder()
                                 .id(ride.getId())
                                 .riderId(ride.getRider().getId())
@@ -289,14 +350,17 @@ public class RideService {
                                 .destinationLat(ride.getDestinationLat())
                                 .destinationLng(ride.getDestinationLng())
                                 .vehicleTier(ride.getVehicleTier())
-                                .status(ride.getStatus())
+                                .status(state.status())
                                 .surgeMultiplier(ride.getSurgeMultiplier())
                                 .estimatedFare(ride.getEstimatedFare())
                                 .createdAt(ride.getCreatedAt());
 
-                if (ride.getAssignedDriver() != null) {
-                        builder.assignedDriverId(ride.getAssignedDriver().getId());
-                        builder.assignedDriverName(ride.getAssignedDriver().getName());
+                // The offered driver (MATCHED) isn't assigned until they accept
+                if (state.driverId() != null
+                                && (state.status() == RideStatus.ACCEPTED || state.status() == RideStatus.COMPLETED)) {
+                        builder.assignedDriverId(state.driverId());
+                        driverRepository.findById(state.driverId())
+                                        .ifPresent(driver -> builder.assignedDriverName(driver.getName()));
                 }
 
                 return builder.build();
@@ -0,0 +1,255 @@
+package com.gocomet.ridehailing.ride.service;
+
+import com.gocomet.ridehailing.common.exception.InvalidStateTransitionException;
+import com.gocomet.ridehailing.common.exception.ResourceNotFoundException;
+import com.gocomet.ridehailing.ride.model.Ride;
+import com.gocomet.ridehailing.ride.model.RideStatus;
+import com.gocomet.ridehailing.ride.model.RideTransition;
+import com.gocomet.ridehailing.ride.repository.RideRepository;
+import com.gocomet.ridehailing.ride.repository.RideTransitionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ride lifecycle state, event-sourced.
+ *
+ * REQUESTED → MATCHING → MATCHED → ACCEPTED → COMPLETED, with MATCHED →
+ * MATCHING on decline and the terminal exits CANCELLED, EXPIRED and
+ * NO_DRIVERS_AVAILABLE.
+ *
+ * Every transition is validated against the current state and appended to
+ * ride_transitions — one INSERT, batched with the rest of the transaction.
+ * The rides row is written at most three times per ride: inserted as
+ * REQUESTED (seq 0), snapshotted once on ACCEPTED and once more with the
+ * terminal snapshot (status, driver, state_seq). The ACCEPTED snapshot takes
+ * an in-progress ride out of the expiry sweeper's (status, updated_at) scan,
+ * which would otherwise meet every running trip on every pass. Matching
+ * transitions in between never rewrite the row.
+ *
+ * Active rides are held here as immutable snapshots. The log is the source of
+ * truth and this map only caches it: a ride that isn't cached (restart,
+ * another instance, idle eviction) is recovered by folding its transitions
+ * after rides.state_seq. A stale cache can't corrupt the log — its append
+ * would reuse a seq and fail the unique (ride_id, seq) index, the transaction
+ * rolls back and the cached state is dropped.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RideStateMachine {
+
+    private static final Map<RideStatus, Set<RideStatus>> ALLOWED = new EnumMap<>(RideStatus.class);
+
+    static {
+        ALLOWED.put(RideStatus.REQUESTED, EnumSet.of(
+                RideStatus.MATCHING, RideStatus.CANCELLED, RideStatus.EXPIRED));
+        ALLOWED.put(RideStatus.MATCHING, EnumSet.of(
+                RideStatus.MATCHED, RideStatus.NO_DRIVERS_AVAILABLE, RideStatus.CANCELLED, RideStatus.EXPIRED));
+        ALLOWED.put(RideStatus.MATCHED, EnumSet.of(
+                RideStatus.ACCEPTED, RideStatus.MATCHING, RideStatus.CANCELLED, RideStatus.EXPIRED));
+        ALLOWED.put(RideStatus.ACCEPTED, EnumSet.of(RideStatus.COMPLETED));
+    }
+
+    private final RideRepository rideRepository;
+    private final RideTransitionRepository transitionRepository;
+
+    @Value("${app.rides.state.idle-eviction-minutes:240}")
+    private long idleEvictionMinutes;
+
+    private final Map<UUID, State> states = new ConcurrentHashMap<>();
+
+    /**
+     * A ride's state after transition seq. driverId is the offered driver
+     * while MATCHED and the ride's driver from ACCEPTED on.
+     */
+    public record State(UUID rideId, RideStatus status, UUID driverId, int seq, long atMillis) {
+    }
+
+    public static boolean isTerminal(RideStatus status) {
+        return !ALLOWED.containsKey(status);
+    }
+
+    /**
+     * Start tracking a ride that was just inserted as REQUESTED.
+     */
+    public State register(Ride ride) {
+        State state = new State(ride.getId(), RideStatus.REQUESTED, null, 0, System.currentTimeMillis());
+        states.put(ride.getId(), state);
+        dropOnRollback(ride.getId());
+        return state;
+    }
+
+    public State current(Ride ride) {
+        UUID driverId = ride.getAssignedDriver() != null ? ride.getAssignedDriver().getId() : null;
+        return current(ride.getId(), ride.getStatus(), driverId, ride.getStateSeq());
+    }
+
+    /**
+     * State of a ride whose snapshot (status, driver, state_seq) was read
+     * without loading the entity, e.g. a history row. The cache is only
+     * trusted when it is at least as new as the snapshot — a ride moved on
+     * another instance stays cached here at its old seq until idle eviction.
+     */
+    public State current(UUID rideId, RideStatus status, UUID driverId, Integer stateSeq) {
+        State state = states.get(rideId);
+        int snapshotSeq = stateSeq != null ? stateSeq : 0;
+        return state != null && state.seq() >= snapshotSeq
+                ? state : recover(rideId, status, driverId, snapshotSeq);
+    }
+
+    public State current(UUID rideId) {
+        State state = states.get(rideId);
+        return state != null ? state : recover(load(rideId));
+    }
+
+    /**
+     * State folded fresh from the log, bypassing (and refreshing) the cache —
+     * for readers that must see transitions made on other instances.
+     */
+    public State reload(Ride ride) {
+        return recover(ride);
+    }
+
+    /**
+     * Validate and apply a transition: append it to the log and, for a
+     * terminal status, write the snapshot to the rides row. Throws
+     * InvalidStateTransitionException if the transition isn't allowed.
+     */
+    public State transition(Ride ride, RideStatus to, UUID driverId) {
+        UUID rideId = ride.getId();
+        State loaded = current(ride);
+        State[] applied = new State[2];
+
+        states.compute(rideId, (id, cached) -> {
+            State from = cached != null ? cached : loaded;
+            if (!ALLOWED.getOrDefault(from.status(), Set.of()).contains(to)) {
+                throw new InvalidStateTransitionException("Ride", from.status().name(), to.name());
+            }
+            UUID nextDriver = switch (to) {
+                case MATCHING -> null;
+                case MATCHED, ACCEPTED, COMPLETED -> driverId != null ? driverId : from.driverId();
+                default -> from.driverId();
+            };
+            applied[0] = from;
+            applied[1] = new State(id, to, nextDriver, from.seq() + 1, System.currentTimeMillis());
+            return applied[1];
+        });
+        State from = applied[0];
+        State next = applied[1];
+        dropOnRollback(rideId);
+
+        transitionRepository.save(RideTransition.builder()
+                .rideId(rideId)
+                .seq(next.seq())
+                .fromStatus(from.status())
+                .toStatus(to)
+                .driverId(next.driverId())
+                .build());
+
+        if (isTerminal(to)) {
+            if (to == RideStatus.COMPLETED) {
+                rideRepository.writeSnapshot(rideId, to.name(), next.driverId(), next.seq());
+            } else {
+                rideRepository.writeSnapshot(rideId, to.name(), next.seq());
+            }
+            afterCommit(() -> states.remove(rideId));
+        } else if (to == RideStatus.ACCEPTED) {
+            rideRepository.writeSnapshot(rideId, to.name(), next.driverId(), next.seq());
+        }
+
+        log.debug("Ride {} {} → {} (seq {})", rideId, from.status(), to, next.seq());
+        return next;
+    }
+
+    /**
+     * Forget rides that were moved to a terminal state outside transition()
+     * (bulk expiry). Call after commit.
+     */
+    public void evict(Collection<UUID> rideIds) {
+        states.keySet().removeAll(rideIds);
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * Drop rides that haven't moved for a while — they recover from the log
+     * on next use.
+     */
+    @Scheduled(fixedDelayString = "${app.rides.state.sweep-interval-ms:600000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleEvictionMinutes * 60_000;
+        states.values().removeIf(state -> state.atMillis() < cutoff);
+    }
+
+    private State recover(Ride ride) {
+        UUID driverId = ride.getAssignedDriver() != null ? ride.getAssignedDriver().getId() : null;
+        return recover(ride.getId(), ride.getStatus(), driverId, ride.getStateSeq() != null ? ride.getStateSeq() : 0);
+    }
+
+    private State recover(UUID rideId, RideStatus status, UUID driverId, int baseSeq) {
+        State state = new State(rideId, status, driverId, baseSeq, System.currentTimeMillis());
+
+        if (!isTerminal(state.status())) {
+            List<RideTransition> transitions =
+                    transitionRepository.findByRideIdAndSeqGreaterThanOrderBySeq(rideId, baseSeq);
+            for (RideTransition t : transitions) {
+                state = new State(rideId, t.getToStatus(), t.getDriverId(), t.getSeq(),
+                        System.currentTimeMillis());
+            }
+        }
+
+        if (isTerminal(state.status())) {
+            states.remove(rideId);
+            return state;
+        }
+        return states.merge(rideId, state, (cached, fresh) -> fresh.seq() >= cached.seq() ? fresh : cached);
+    }
+
+    private Ride load(UUID rideId) {
+        return rideRepository.findById(rideId)
+                .orElseThrow(() -> new ResourceNotFoundException("Ride", "id", rideId));
+    }
+
+    private void dropOnRollback(UUID rideId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    states.remove(rideId);
+                }
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -1,14 +1,16 @@
 package com.gocomet.ridehailing.rider.controller;
 
+import com.gocomet.ridehailing.common.pagination.CursorPage;
+import com.gocomet.ridehailing.ride.dto.RideHistoryItem;
+import com.gocomet.ridehailing.ride.service.RideService;
 import com.gocomet.ridehailing.rider.dto.RiderResponse;
 import com.gocomet.ridehailing.rider.service.RiderService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/v1/riders")
@@ -16,6 +18,7 @@ import java.util.List;
 public class RiderController {
 
     private final RiderService riderService;
+    private final RideService rideService;
 
     /**
      * GET /v1/riders — List all riders (for demo/frontend selection)
@@ -24,5 +27,16 @@ public class RiderController {
     public ResponseEntity<List<RiderResponse>> getRiders() {
         return ResponseEntity.ok(riderService.getAllRiders());
     }
-}
 
+    /**
+     * GET /v1/riders/{id}/rides — Ride history, newest first (keyset paginated)
+     */
+    @GetMapping("/{id}/rides")
+    public ResponseEntity<CursorPage<RideHistoryItem>> getRideHistory(
+            @PathVariable UUID id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+
+        return ResponseEntity.ok(rideService.getRideHistory(id, cursor, limit));
+    }
+}
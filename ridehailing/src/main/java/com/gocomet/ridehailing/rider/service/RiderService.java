@@ -1,12 +1,17 @@
 package com.gocomet.ridehailing.rider.service;
 
+import com.gocomet.ridehailing.common.exception.ResourceNotFoundException;
 import com.gocomet.ridehailing.rider.dto.RiderResponse;
 import com.gocomet.ridehailing.rider.model.Rider;
 import com.gocomet.ridehailing.rider.repository.RiderRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
@@ -14,6 +19,12 @@ public class RiderService {
 
     private final RiderRepository riderRepository;
 
+    @Value("${app.riders.existence-cache-size:100000}")
+    private int existenceCacheSize;
+
+    // Riders known to exist; riders are never deleted, so entries never go stale
+    private final Set<UUID> knownRiders = ConcurrentHashMap.newKeySet();
+
     public List<RiderResponse> getAllRiders() {
         return riderRepository.findAll()
                 .stream()
@@ -21,6 +32,23 @@ public class RiderService {
                 .toList();
     }
 
+    /**
+     * Rider reference for attaching to a new entity, without loading the row.
+     * Existence is checked against the database once per rider and cached.
+     */
+    public Rider getRiderReference(UUID riderId) {
+        if (!knownRiders.contains(riderId)) {
+            if (!riderRepository.existsById(riderId)) {
+                throw new ResourceNotFoundException("Rider", "id", riderId);
+            }
+            if (knownRiders.size() >= existenceCacheSize) {
+                knownRiders.clear();
+            }
+            knownRiders.add(riderId);
+        }
+        return riderRepository.getReferenceById(riderId);
+    }
+
     private RiderResponse toResponse(Rider rider) {
         return RiderResponse.builder()
                 .id(rider.getId())
@@ -31,4 +59,3 @@ public class RiderService {
                 .build();
     }
 }
-
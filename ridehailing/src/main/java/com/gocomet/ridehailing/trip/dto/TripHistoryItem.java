@@ -0,0 +1,30 @@
+package com.gocomet.ridehailing.trip.dto;
+
+import com.gocomet.ridehailing.trip.model.TripStatus;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One row of a driver's trip history — projected straight from the trips
+ * table (see TripRepository.findHistory), no entity loading.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TripHistoryItem {
+
+    private UUID id;
+    private UUID rideId;
+    private UUID riderId;
+    private TripStatus status;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private BigDecimal distanceKm;
+    private BigDecimal totalFare;
+    private LocalDateTime createdAt;
+}
@@ -15,7 +15,9 @@ import java.util.UUID;
 @Table(name = "trips", indexes = {
         @Index(name = "idx_trips_ride_id", columnList = "ride_id", unique = true),
         @Index(name = "idx_trips_driver_status", columnList = "driver_id, status"),
-        @Index(name = "idx_trips_rider_id", columnList = "rider_id")
+        @Index(name = "idx_trips_driver_created", columnList = "driver_id, created_at, id"),
+        @Index(name = "idx_trips_rider_id", columnList = "rider_id"),
+        @Index(name = "idx_trips_payout_end", columnList = "payout_run_id, end_time, id")
 })
 @Getter
 @Setter
@@ -76,6 +78,10 @@ public class Trip {
     @Column(name = "total_fare", precision = 10, scale = 2)
     private BigDecimal totalFare;
 
+    // Set by the payout settlement job once the driver has been credited
+    @Column(name = "payout_run_id")
+    private Long payoutRunId;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
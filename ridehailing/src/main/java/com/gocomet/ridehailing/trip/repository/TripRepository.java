@@ -1,10 +1,16 @@
 package com.gocomet.ridehailing.trip.repository;
 
+import com.gocomet.ridehailing.trip.dto.TripHistoryItem;
 import com.gocomet.ridehailing.trip.model.Trip;
 import com.gocomet.ridehailing.trip.model.TripStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,4 +19,17 @@ public interface TripRepository extends JpaRepository<Trip, UUID> {
     Optional<Trip> findByRideId(UUID rideId);
     Optional<Trip> findByDriverIdAndStatus(UUID driverId, TripStatus status);
     boolean existsByDriverIdAndStatus(UUID driverId, TripStatus status);
+
+    String HISTORY_SELECT = "SELECT new com.gocomet.ridehailing.trip.dto.TripHistoryItem("
+            + "t.id, t.ride.id, t.rider.id, t.status, t.startTime, t.endTime, t.distanceKm, t.totalFare, "
+            + "t.createdAt) FROM Trip t WHERE t.driver.id = :driverId ";
+
+    // Driver history, newest first — seeks on idx_trips_driver_created, never OFFSET
+    @Query(HISTORY_SELECT + "ORDER BY t.createdAt DESC, t.id DESC")
+    List<TripHistoryItem> findHistory(@Param("driverId") UUID driverId, Limit limit);
+
+    @Query(HISTORY_SELECT + "AND (t.createdAt, t.id) < (:createdAt, :id) ORDER BY t.createdAt DESC, t.id DESC")
+    List<TripHistoryItem> findHistoryAfter(@Param("driverId") UUID driverId,
+                                           @Param("createdAt") LocalDateTime createdAt,
+                                           @Param("id") UUID id, Limit limit);
 }
@@ -1,34 +1,30 @@
 package com.gocomet.ridehailing.trip.service;
 
-import com.gocomet.ridehailing.pricing.service.SurgePricingService;
+import com.gocomet.ridehailing.driver.model.VehicleType;
+import com.gocomet.ridehailing.pricing.service.FareEngine;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 
 @Service
 @RequiredArgsConstructor
 public class FareCalculationService {
 
-    private final SurgePricingService surgePricingService;
+    private final FareEngine fareEngine;
 
     /**
-     * Calculate the final fare for a completed trip.
+     * Distance, base fare and surged fare for a completed trip — integer paise
+     * throughout, rates from the start city's pricing table. The distance is
+     * the odometer reading when there is one, but never less than the
+     * straight line between start and end.
      */
-    public BigDecimal calculateFare(double startLat, double startLng,
-                                     double endLat, double endLng,
-                                     String vehicleTier, BigDecimal surgeMultiplier) {
-        double distanceKm = surgePricingService.calculateDistance(startLat, startLng, endLat, endLng);
-        return surgePricingService.estimateFare(startLat, startLng, endLat, endLng, vehicleTier, surgeMultiplier);
-    }
-
-    /**
-     * Calculate distance for the trip record.
-     */
-    public BigDecimal calculateDistanceKm(double startLat, double startLng,
-                                           double endLat, double endLng) {
-        double distance = surgePricingService.calculateDistance(startLat, startLng, endLat, endLng);
-        return BigDecimal.valueOf(distance).setScale(2, RoundingMode.HALF_UP);
+    public FareEngine.FareBreakdown calculate(double startLat, double startLng,
+                                              double endLat, double endLng,
+                                              long odometerMeters, long durationSeconds,
+                                              VehicleType vehicleTier, BigDecimal surgeMultiplier) {
+        long straightLine = FareEngine.straightLineMeters(startLat, startLng, endLat, endLng);
+        return fareEngine.compute(startLat, startLng, Math.max(odometerMeters, straightLine), durationSeconds,
+                vehicleTier, FareEngine.surgeBasisPoints(surgeMultiplier));
     }
 }
@@ -0,0 +1,148 @@
+package com.gocomet.ridehailing.trip.service;
+
+import com.gocomet.ridehailing.driver.service.LocationService;
+import com.gocomet.ridehailing.notification.service.NotificationService;
+import com.gocomet.ridehailing.payment.service.PaymentService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Side effects of a completed trip, off the request thread.
+ *
+ * TripService.endTrip only commits the trip, the freed driver, the ride's
+ * COMPLETED transition, the TRIP_COMPLETED outbox row and — unless the ride
+ * is paid in cash — the PROCESSING payment row. Once that commits, the rest
+ * runs here as one chain per trip, in order:
+ *
+ *   1. driver re-enters the Redis availability pool
+ *   2. rider is notified with the fare
+ *   3. the payment's first charge is sent to the PSP
+ *
+ * Nothing here has to survive a crash. A failing or lost stage is logged or
+ * simply doesn't run: a missed pool re-entry is fixed by the driver's next
+ * location ping, and a charge that was never sent is picked up from the
+ * payment row by PaymentRetryEngine.
+ *
+ * The executor is bounded; when its queue is full the committing thread runs
+ * the chain itself, so overload slows trip-end down. Chains submitted after
+ * shutdown are dropped — their payments are reconciled the same way.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TripCompletionPipeline {
+
+    private final LocationService locationService;
+    private final NotificationService notificationService;
+    private final PaymentService paymentService;
+
+    @Value("${app.trip.completion.pool-size:8}")
+    private int poolSize;
+
+    @Value("${app.trip.completion.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Everything the side effects need, captured inside the transaction so
+     * no stage touches a lazy entity.
+     */
+    public record Completion(UUID tripId, UUID rideId, UUID riderId, UUID driverId,
+                             Double driverLat, Double driverLng, String vehicleType,
+                             UUID paymentId, BigDecimal distanceKm, BigDecimal baseFare,
+                             BigDecimal surgeMultiplier, BigDecimal totalFare) {
+    }
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threads = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "trip-completion-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Trip completion pipeline stopped with {} chains queued", executor.getQueue().size());
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Run the side effects once the caller's transaction commits (at once
+     * outside a transaction). Nothing runs if it rolls back.
+     */
+    public void submitAfterCommit(Completion completion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(completion);
+                }
+            });
+        } else {
+            submit(completion);
+        }
+    }
+
+    private CompletableFuture<Void> submit(Completion c) {
+        return CompletableFuture
+                .runAsync(() -> stage(c, "pool re-entry", () -> reenterPool(c)), executor)
+                .thenRun(() -> stage(c, "rider notification", () -> notifyRider(c)))
+                .thenRun(() -> stage(c, "payment kick-off", () -> startPayment(c)));
+    }
+
+    private void reenterPool(Completion c) {
+        if (c.driverLat() != null && c.driverLng() != null) {
+            locationService.updateDriverLocation(c.driverId(), c.driverLat(), c.driverLng(), c.vehicleType());
+        }
+    }
+
+    private void notifyRider(Completion c) {
+        notificationService.notifyRider(c.riderId(), "TRIP_COMPLETED", Map.of(
+                "tripId", c.tripId().toString(),
+                "distanceKm", c.distanceKm().toString(),
+                "baseFare", c.baseFare().toString(),
+                "surgeMultiplier", c.surgeMultiplier().toString(),
+                "totalFare", c.totalFare().toString()
+        ));
+    }
+
+    // No payment row for cash rides (settled with the driver) or rides without a stored method
+    private void startPayment(Completion c) {
+        if (c.paymentId() != null) {
+            paymentService.chargeOpened(c.paymentId());
+        }
+    }
+
+    private static void stage(Completion c, String name, Runnable action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            log.error("Trip {} completion: {} failed", c.tripId(), name, e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.gocomet.ridehailing.trip.service;
+
+import com.gocomet.ridehailing.common.geo.GeoDistance;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-trip GPS odometer, fed by location pings while the driver is ON_TRIP.
+ *
+ * Each active trip holds one small fixed-size entry: the last accepted fix,
+ * its time and the distance accumulated so far. A ping costs one short-range
+ * distance (GeoDistance fast path) and a few comparisons; ending a trip adds
+ * the final leg and reads the total — O(1), nothing stored per ping and
+ * nothing replayed at the end.
+ *
+ * Jitter filtering:
+ * - counting starts once the driver is within pickup-radius of the pickup
+ *   (pings on the way to the rider are not part of the trip)
+ * - steps shorter than min-step are ignored and the anchor stays put, so GPS
+ *   noise while stationary adds nothing but slow real movement still counts
+ * - steps implying more than max-speed are dropped as bad fixes
+ *
+ * The map is node-local: pings and trip end must reach the same instance
+ * (sticky routing per driver). Otherwise the trip falls back to the straight
+ * line, which TripService uses as a lower bound anyway.
+ */
+@Service
+@Slf4j
+public class TripOdometer {
+
+    @Value("${app.trip.odometer.min-step-meters:15}")
+    private double minStepMeters;
+
+    @Value("${app.trip.odometer.max-speed-mps:55}")
+    private double maxSpeedMps;
+
+    @Value("${app.trip.odometer.pickup-radius-meters:150}")
+    private double pickupRadiusMeters;
+
+    @Value("${app.trip.odometer.max-idle-minutes:240}")
+    private long maxIdleMinutes;
+
+    private final Map<UUID, Odometer> byTrip = new ConcurrentHashMap<>();
+    private final Map<UUID, UUID> tripByDriver = new ConcurrentHashMap<>();
+
+    private static final class Odometer {
+        final UUID driverId;
+        double lat;
+        double lng;
+        long atNanos;
+        double meters;
+        boolean started;
+        volatile long touchedAtMillis;
+
+        Odometer(UUID driverId, double pickupLat, double pickupLng) {
+            this.driverId = driverId;
+            this.lat = pickupLat;
+            this.lng = pickupLng;
+            this.touchedAtMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Start measuring a trip; the pickup point anchors the first leg. Takes
+     * effect once the caller's transaction commits (at once outside one), so
+     * a trip whose creation rolls back is never measured.
+     */
+    public void start(UUID tripId, UUID driverId, double pickupLat, double pickupLng) {
+        Odometer odometer = new Odometer(driverId, pickupLat, pickupLng);
+        afterCommit(() -> {
+            byTrip.put(tripId, odometer);
+            tripByDriver.put(driverId, tripId);
+        });
+    }
+
+    /**
+     * Feed a location ping from a driver who is ON_TRIP.
+     */
+    public void onLocation(UUID driverId, double lat, double lng) {
+        UUID tripId = tripByDriver.get(driverId);
+        Odometer odometer = tripId != null ? byTrip.get(tripId) : null;
+        if (odometer == null) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        synchronized (odometer) {
+            odometer.touchedAtMillis = System.currentTimeMillis();
+            double step = GeoDistance.distanceKm(odometer.lat, odometer.lng, lat, lng) * 1000;
+
+            if (!odometer.started) {
+                // Still heading to the pickup — only arm the odometer once there
+                if (step <= pickupRadiusMeters) {
+                    odometer.started = true;
+                    odometer.lat = lat;
+                    odometer.lng = lng;
+                    odometer.atNanos = now;
+                }
+                return;
+            }
+
+            if (step < minStepMeters) {
+                return;
+            }
+            double seconds = (now - odometer.atNanos) / 1e9;
+            if (seconds <= 0 || step / seconds > maxSpeedMps) {
+                return;
+            }
+
+            odometer.meters += step;
+            odometer.lat = lat;
+            odometer.lng = lng;
+            odometer.atNanos = now;
+        }
+    }
+
+    /**
+     * Return the distance in metres including the final leg to the drop
+     * point, or -1 if the trip was never measured here. The trip stops being
+     * measured once the caller's transaction commits (at once outside one):
+     * if trip end rolls back, a retry reads the same odometer again.
+     */
+    public long finish(UUID tripId, double endLat, double endLng) {
+        Odometer odometer = byTrip.get(tripId);
+        if (odometer == null) {
+            return -1;
+        }
+        afterCommit(() -> {
+            byTrip.remove(tripId, odometer);
+            tripByDriver.remove(odometer.driverId, tripId);
+        });
+
+        synchronized (odometer) {
+            if (!odometer.started) {
+                return -1;
+            }
+            double lastLeg = GeoDistance.distanceKm(odometer.lat, odometer.lng, endLat, endLng) * 1000;
+            return Math.round(odometer.meters + lastLeg);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Drop trips that stopped receiving pings (never ended, or ended elsewhere).
+     */
+    @Scheduled(fixedDelayString = "${app.trip.odometer.purge-interval-ms:600000}")
+    public void purgeIdle() {
+        long cutoff = System.currentTimeMillis() - maxIdleMinutes * 60_000;
+        byTrip.entrySet().removeIf(entry -> {
+            if (entry.getValue().touchedAtMillis >= cutoff) {
+                return false;
+            }
+            tripByDriver.remove(entry.getValue().driverId, entry.getKey());
+            log.debug("Dropped idle odometer for trip {}", entry.getKey());
+            return true;
+        });
+    }
+}
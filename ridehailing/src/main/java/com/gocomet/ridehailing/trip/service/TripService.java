@@ -1,25 +1,36 @@
 package com.gocomet.ridehailing.trip.service;
 
 import com.gocomet.ridehailing.common.exception.InvalidStateTransitionException;
+import com.gocomet.ridehailing.common.pagination.Cursor;
+import com.gocomet.ridehailing.common.pagination.CursorPage;
 import com.gocomet.ridehailing.common.exception.ResourceNotFoundException;
 import com.gocomet.ridehailing.driver.model.Driver;
 import com.gocomet.ridehailing.driver.model.DriverStatus;
 import com.gocomet.ridehailing.driver.repository.DriverRepository;
-import com.gocomet.ridehailing.driver.service.LocationService;
-import com.gocomet.ridehailing.notification.service.NotificationService;
+import com.gocomet.ridehailing.payment.model.PaymentMethod;
+import com.gocomet.ridehailing.payment.service.PaymentService;
+import com.gocomet.ridehailing.pricing.service.FareEngine;
+import com.gocomet.ridehailing.ride.event.RideEventProducer;
+import com.gocomet.ridehailing.ride.model.RideStatus;
+import com.gocomet.ridehailing.ride.service.RideGuardService;
+import com.gocomet.ridehailing.ride.service.RideStateMachine;
 import com.gocomet.ridehailing.trip.dto.TripEndRequest;
+import com.gocomet.ridehailing.trip.dto.TripHistoryItem;
 import com.gocomet.ridehailing.trip.dto.TripResponse;
 import com.gocomet.ridehailing.trip.model.Trip;
 import com.gocomet.ridehailing.trip.model.TripStatus;
 import com.gocomet.ridehailing.trip.repository.TripRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Map;
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -30,16 +41,27 @@ public class TripService {
     private final TripRepository tripRepository;
     private final DriverRepository driverRepository;
     private final FareCalculationService fareCalculationService;
-    private final LocationService locationService;
-    private final NotificationService notificationService;
+    private final TripOdometer tripOdometer;
+    private final TripTracker tripTracker;
+    private final TripCompletionPipeline tripCompletionPipeline;
+    private final RideGuardService rideGuardService;
+    private final RideEventProducer rideEventProducer;
+    private final RideStateMachine rideStateMachine;
+    private final PaymentService paymentService;
+
+    @Value("${app.history.max-page-size:100}")
+    private int maxHistoryPageSize;
 
     /**
      * End a trip and calculate fare.
      * 1. Validate trip is in progress
      * 2. Set end location and time
-     * 3. Calculate distance and fare
+     * 3. Calculate distance (GPS odometer) and fare
      * 4. Update driver status back to AVAILABLE
-     * 5. Notify rider with fare details
+     * 5. Complete the ride and queue TRIP_COMPLETED
+     * 6. Open the PROCESSING payment (not for cash) — committed with the trip
+     * 7. After commit: TripCompletionPipeline re-adds the driver to the pool,
+     *    notifies the rider and sends the charge
      */
     @Transactional
     public TripResponse endTrip(UUID tripId, TripEndRequest request) {
@@ -50,30 +72,26 @@ public class TripService {
             throw new InvalidStateTransitionException("Trip", trip.getStatus().name(), "COMPLETED");
         }
 
-        // Calculate distance
-        BigDecimal distanceKm = fareCalculationService.calculateDistanceKm(
-                trip.getStartLat(), trip.getStartLng(),
-                request.getEndLat(), request.getEndLng()
-        );
-
-        // Calculate fare
-        String vehicleTier = trip.getRide().getVehicleTier().name();
-        BigDecimal totalFare = fareCalculationService.calculateFare(
-                trip.getStartLat(), trip.getStartLng(),
-                request.getEndLat(), request.getEndLng(),
-                vehicleTier, trip.getSurgeMultiplier()
-        );
+        // Route distance from the GPS odometer (straight line if it has no reading);
+        // odometer and tracker let go of the trip only once this transaction commits
+        long odometerMeters = tripOdometer.finish(tripId, request.getEndLat(), request.getEndLng());
+        tripTracker.stop(trip.getDriver().getId());
 
-        // Base fare (without surge)
-        BigDecimal baseFare = fareCalculationService.calculateFare(
+        // Calculate distance, base fare and surged fare in one pass
+        LocalDateTime endTime = LocalDateTime.now();
+        FareEngine.FareBreakdown fare = fareCalculationService.calculate(
                 trip.getStartLat(), trip.getStartLng(),
                 request.getEndLat(), request.getEndLng(),
-                vehicleTier, BigDecimal.ONE
+                odometerMeters, Duration.between(trip.getStartTime(), endTime).getSeconds(),
+                trip.getRide().getVehicleTier(), trip.getSurgeMultiplier()
         );
+        BigDecimal distanceKm = fare.distanceKm();
+        BigDecimal baseFare = fare.baseFare();
+        BigDecimal totalFare = fare.totalFare();
 
         // Update trip
         trip.setStatus(TripStatus.COMPLETED);
-        trip.setEndTime(LocalDateTime.now());
+        trip.setEndTime(endTime);
         trip.setEndLat(request.getEndLat());
         trip.setEndLng(request.getEndLng());
         trip.setDistanceKm(distanceKm);
@@ -86,24 +104,26 @@ public class TripService {
         driver.setStatus(DriverStatus.AVAILABLE);
         driverRepository.save(driver);
 
-        // Re-add driver to Redis availability pool
-        if (driver.getCurrentLat() != null && driver.getCurrentLng() != null) {
-            locationService.updateDriverLocation(
-                    driver.getId(),
-                    driver.getCurrentLat(),
-                    driver.getCurrentLng(),
-                    driver.getVehicleType().name()
-            );
-        }
+        // Ride reaches its terminal state — appended and snapshotted to the rides row
+        rideStateMachine.transition(trip.getRide(), RideStatus.COMPLETED, driver.getId());
+
+        // Publish TRIP_COMPLETED (outbox row, committed with the trip)
+        rideEventProducer.publishTripCompleted(trip.getRide().getId(), trip.getRider().getId(),
+                driver.getId(), totalFare);
+
+        // Payment row commits with the trip; the charge is sent after commit (or by the retry engine)
+        PaymentMethod paymentMethod = trip.getRide().getPaymentMethod();
+        UUID paymentId = paymentMethod != null && paymentMethod != PaymentMethod.CASH
+                ? paymentService.openForTrip(trip, paymentMethod) : null;
 
-        // Notify rider with fare
-        notificationService.notifyRider(trip.getRider().getId(), "TRIP_COMPLETED", Map.of(
-                "tripId", tripId.toString(),
-                "distanceKm", distanceKm.toString(),
-                "baseFare", baseFare.toString(),
-                "surgeMultiplier", trip.getSurgeMultiplier().toString(),
-                "totalFare", totalFare.toString()
-        ));
+        // Rider is free to book again
+        rideGuardService.releaseActiveRide(trip.getRider().getId(), trip.getRide().getId());
+
+        // Pool re-entry, rider notification and payment run after commit, off this thread
+        tripCompletionPipeline.submitAfterCommit(new TripCompletionPipeline.Completion(
+                tripId, trip.getRide().getId(), trip.getRider().getId(), driver.getId(),
+                driver.getCurrentLat(), driver.getCurrentLng(), driver.getVehicleType().name(),
+                paymentId, distanceKm, baseFare, trip.getSurgeMultiplier(), totalFare));
 
         log.info("Trip {} completed. Distance: {}km, Fare: {}", tripId, distanceKm, totalFare);
         return toResponse(trip);
@@ -115,6 +135,30 @@ public class TripService {
         return toResponse(trip);
     }
 
+    /**
+     * A driver's trips, newest first, one keyset page at a time — projected
+     * straight into TripHistoryItem.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<TripHistoryItem> getTripHistory(UUID driverId, String cursor, int limit) {
+        if (limit < 1 || limit > maxHistoryPageSize) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxHistoryPageSize);
+        }
+        if (!driverRepository.existsById(driverId)) {
+            throw new ResourceNotFoundException("Driver", "id", driverId);
+        }
+
+        // One extra row tells us whether there is a next page
+        List<TripHistoryItem> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = tripRepository.findHistory(driverId, Limit.of(limit + 1));
+        } else {
+            Cursor after = Cursor.decode(cursor);
+            rows = tripRepository.findHistoryAfter(driverId, after.createdAt(), after.id(), Limit.of(limit + 1));
+        }
+        return CursorPage.of(rows, limit, item -> new Cursor(item.getCreatedAt(), item.getId()));
+    }
+
     private TripResponse toResponse(Trip trip) {
         return TripResponse.builder()
                 .id(trip.getId())
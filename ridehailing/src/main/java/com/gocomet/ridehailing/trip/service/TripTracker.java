@@ -0,0 +1,172 @@
+package com.gocomet.ridehailing.trip.service;
+
+import com.gocomet.ridehailing.notification.service.NotificationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live driver position for the rider during a trip.
+ *
+ * RideService.acceptRide registers driver → (rider, trip) here, so a ping
+ * from an ON_TRIP driver finds its rider with one map lookup — no trip query.
+ * Positions go to the rider's /topic/rider.{riderId} channel as
+ * DRIVER_LOCATION, at most once per min-interval-ms per trip:
+ *
+ * - a ping arriving after the interval has passed is sent at once
+ * - pings inside the interval only replace the pending position (coalesced),
+ *   and the flush tick sends the newest one when the interval is up
+ *
+ * so a driver app pinging every 200ms still costs the rider one message a
+ * second, and the last position is never held back longer than a tick.
+ *
+ * Node-local like TripOdometer: pings must reach the instance that accepted
+ * the ride (sticky routing per driver), otherwise the rider sees no updates.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TripTracker {
+
+    private final NotificationService notificationService;
+
+    @Value("${app.trip.tracking.min-interval-ms:1000}")
+    private long minIntervalMs;
+
+    @Value("${app.trip.tracking.max-idle-minutes:240}")
+    private long maxIdleMinutes;
+
+    private final Map<UUID, Tracked> byDriver = new ConcurrentHashMap<>();
+
+    private static final class Tracked {
+        final UUID riderId;
+        final UUID tripId;
+        double lat;
+        double lng;
+        boolean pending;
+        long sentAtMillis;
+        volatile long touchedAtMillis;
+
+        Tracked(UUID riderId, UUID tripId) {
+            this.riderId = riderId;
+            this.tripId = tripId;
+            this.touchedAtMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Start streaming a driver's position to the rider of their trip once the
+     * caller's transaction commits (at once outside one) — a rolled-back
+     * accept never links the driver to the rider.
+     */
+    public void start(UUID driverId, UUID riderId, UUID tripId) {
+        Tracked tracked = new Tracked(riderId, tripId);
+        afterCommit(() -> byDriver.put(driverId, tracked));
+    }
+
+    /**
+     * Stop streaming once the caller's transaction commits (at once outside
+     * one) — a rolled-back trip end keeps the rider's updates going.
+     */
+    public void stop(UUID driverId) {
+        Tracked tracked = byDriver.get(driverId);
+        if (tracked == null) {
+            return;
+        }
+        afterCommit(() -> byDriver.remove(driverId, tracked));
+    }
+
+    /**
+     * Feed a location ping from a driver who is ON_TRIP.
+     */
+    public void onLocation(UUID driverId, double lat, double lng) {
+        Tracked tracked = byDriver.get(driverId);
+        if (tracked == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean sendNow;
+        synchronized (tracked) {
+            tracked.touchedAtMillis = now;
+            tracked.lat = lat;
+            tracked.lng = lng;
+            sendNow = now - tracked.sentAtMillis >= minIntervalMs;
+            tracked.pending = !sendNow;
+            if (sendNow) {
+                tracked.sentAtMillis = now;
+            }
+        }
+        if (sendNow) {
+            send(driverId, tracked, lat, lng);
+        }
+    }
+
+    public int size() {
+        return byDriver.size();
+    }
+
+    /**
+     * Send coalesced positions whose interval is up, and drop trips that
+     * stopped receiving pings (never ended, or ended elsewhere).
+     */
+    @Scheduled(fixedDelayString = "${app.trip.tracking.min-interval-ms:1000}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        long idleCutoff = now - maxIdleMinutes * 60_000;
+
+        byDriver.forEach((driverId, tracked) -> {
+            if (tracked.touchedAtMillis < idleCutoff) {
+                byDriver.remove(driverId, tracked);
+                return;
+            }
+            double lat;
+            double lng;
+            synchronized (tracked) {
+                if (!tracked.pending || now - tracked.sentAtMillis < minIntervalMs) {
+                    return;
+                }
+                tracked.pending = false;
+                tracked.sentAtMillis = now;
+                lat = tracked.lat;
+                lng = tracked.lng;
+            }
+            send(driverId, tracked, lat, lng);
+        });
+    }
+
+    private void send(UUID driverId, Tracked tracked, double lat, double lng) {
+        Map<String, Object> position = new LinkedHashMap<>();
+        position.put("tripId", tracked.tripId.toString());
+        position.put("driverId", driverId.toString());
+        position.put("lat", lat);
+        position.put("lng", lng);
+        try {
+            notificationService.notifyRider(tracked.riderId, "DRIVER_LOCATION", position);
+        } catch (Exception e) {
+            log.warn("Failed to push driver {} position to rider {}", driverId, tracked.riderId, e);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
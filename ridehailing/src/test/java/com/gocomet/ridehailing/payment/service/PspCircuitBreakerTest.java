@@ -0,0 +1,178 @@
+package com.gocomet.ridehailing.payment.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PspCircuitBreakerTest {
+
+    private static final long LONG_OPEN_MILLIS = 60_000;
+    private static final long SHORT_OPEN_MILLIS = 100;
+
+    // window 10, minimum 5 calls, 50% failures or 80% slow calls trip it
+    private static PspCircuitBreaker breaker(long openMillis, int halfOpenCalls) {
+        return new PspCircuitBreaker(10, 5, 0.5, 0.8, openMillis, halfOpenCalls);
+    }
+
+    private static void recordMany(PspCircuitBreaker breaker, int count, boolean failure, boolean slow) {
+        for (int i = 0; i < count; i++) {
+            breaker.record(failure, slow);
+        }
+    }
+
+    private static PspCircuitBreaker halfOpen(int halfOpenCalls) throws InterruptedException {
+        PspCircuitBreaker breaker = breaker(SHORT_OPEN_MILLIS, halfOpenCalls);
+        breaker.forceOpen();
+        Thread.sleep(SHORT_OPEN_MILLIS + 50);
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.HALF_OPEN);
+        return breaker;
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        PspCircuitBreaker breaker = breaker(LONG_OPEN_MILLIS, 2);
+        recordMany(breaker, 3, false, false);
+        recordMany(breaker, 2, true, false);
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.CLOSED);
+
+        breaker.record(true, false);
+
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(breaker.retryAtMillis()).isGreaterThan(System.currentTimeMillis());
+    }
+
+    @Test
+    void opensWhenSlowCallRateReachesThreshold() {
+        PspCircuitBreaker breaker = breaker(LONG_OPEN_MILLIS, 2);
+        recordMany(breaker, 1, false, false);
+        recordMany(breaker, 3, false, true);
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.CLOSED);
+
+        breaker.record(false, true);
+
+        assertThat(breaker.slowCallRate()).isEqualTo(0.8);
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        PspCircuitBreaker breaker = breaker(LONG_OPEN_MILLIS, 2);
+        recordMany(breaker, 4, true, true);
+
+        assertThat(breaker.failureRate()).isEqualTo(1.0);
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        breaker.record(false, false);
+
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void oldOutcomesLeaveTheWindow() {
+        PspCircuitBreaker breaker = breaker(LONG_OPEN_MILLIS, 2);
+        recordMany(breaker, 6, false, false);
+        recordMany(breaker, 4, true, false);
+        assertThat(breaker.recordedCalls()).isEqualTo(10);
+        assertThat(breaker.failureRate()).isEqualTo(0.4);
+
+        // Ten more successes push every earlier outcome out of the 10-call window
+        recordMany(breaker, 10, false, false);
+
+        assertThat(breaker.recordedCalls()).isEqualTo(10);
+        assertThat(breaker.failureRate()).isEqualTo(0.0);
+
+        // Four failures in the last ten calls stay below 50%
+        recordMany(breaker, 4, true, false);
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.CLOSED);
+        breaker.record(true, false);
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void halfOpenClosesAfterAllTrialsSucceed() throws InterruptedException {
+        PspCircuitBreaker breaker = halfOpen(2);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.record(false, false);
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.HALF_OPEN);
+        breaker.record(false, false);
+
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.CLOSED);
+        assertThat(breaker.recordedCalls()).isZero();
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void halfOpenReopensOnFailedTrial() throws InterruptedException {
+        PspCircuitBreaker breaker = halfOpen(2);
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        breaker.record(true, false);
+
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void halfOpenReopensOnSlowTrial() throws InterruptedException {
+        PspCircuitBreaker breaker = halfOpen(2);
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        breaker.record(false, true);
+
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void cancelGivesBackTheTrialSlot() throws InterruptedException {
+        PspCircuitBreaker breaker = halfOpen(1);
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.cancel();
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void cancelWhileClosedChangesNothing() {
+        PspCircuitBreaker breaker = breaker(LONG_OPEN_MILLIS, 2);
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        breaker.cancel();
+
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.CLOSED);
+        assertThat(breaker.recordedCalls()).isZero();
+    }
+
+    @Test
+    void outcomesRecordedWhileOpenAreIgnored() {
+        PspCircuitBreaker breaker = breaker(LONG_OPEN_MILLIS, 2);
+        breaker.forceOpen();
+
+        recordMany(breaker, 10, false, false);
+
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.OPEN);
+        assertThat(breaker.recordedCalls()).isZero();
+    }
+
+    @Test
+    void resetClosesAndClearsTheWindow() {
+        PspCircuitBreaker breaker = breaker(LONG_OPEN_MILLIS, 2);
+        recordMany(breaker, 5, true, false);
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.OPEN);
+
+        breaker.reset();
+
+        assertThat(breaker.state()).isEqualTo(PspCircuitBreaker.State.CLOSED);
+        assertThat(breaker.recordedCalls()).isZero();
+        assertThat(breaker.failureRate()).isEqualTo(0.0);
+        assertThat(breaker.retryAtMillis()).isZero();
+    }
+}
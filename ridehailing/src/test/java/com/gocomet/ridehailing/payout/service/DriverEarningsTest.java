@@ -0,0 +1,93 @@
+package com.gocomet.ridehailing.payout.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DriverEarningsTest {
+
+    private static Map<UUID, long[]> collect(DriverEarnings earnings) {
+        Map<UUID, long[]> totals = new HashMap<>();
+        earnings.forEach((driverId, trips, paise) -> {
+            long[] previous = totals.put(driverId, new long[]{trips, paise});
+            assertThat(previous).as("driver %s visited twice", driverId).isNull();
+        });
+        return totals;
+    }
+
+    @Test
+    void sumsTripsAndPaisePerDriver() {
+        DriverEarnings earnings = new DriverEarnings(4);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        earnings.add(first, 10_000);
+        earnings.add(second, 2_550);
+        earnings.add(first, 7_525);
+
+        Map<UUID, long[]> totals = collect(earnings);
+        assertThat(earnings.size()).isEqualTo(2);
+        assertThat(totals.get(first)).containsExactly(2, 17_525);
+        assertThat(totals.get(second)).containsExactly(1, 2_550);
+    }
+
+    @Test
+    void keepsDriversApartWhenTheirKeysHashAlike() {
+        DriverEarnings earnings = new DriverEarnings(1);
+        // The slot hash folds msb ^ rotl(lsb, 32), so these three land in the same slot
+        long bits = 0x1234_5678_9abc_def0L;
+        UUID a = new UUID(bits, 0);
+        UUID b = new UUID(0, Long.rotateRight(bits, 32));
+        UUID c = new UUID(bits ^ 1, 1L << 32);
+
+        earnings.add(a, 100);
+        earnings.add(b, 200);
+        earnings.add(c, 300);
+        earnings.add(b, 20);
+
+        Map<UUID, long[]> totals = collect(earnings);
+        assertThat(earnings.size()).isEqualTo(3);
+        assertThat(totals.get(a)).containsExactly(1, 100);
+        assertThat(totals.get(b)).containsExactly(2, 220);
+        assertThat(totals.get(c)).containsExactly(1, 300);
+    }
+
+    @Test
+    void growsPastTheExpectedDriverCount() {
+        // Sized for one driver: starts at 32 slots and has to grow several times
+        DriverEarnings earnings = new DriverEarnings(1);
+        Map<UUID, long[]> expected = new HashMap<>();
+        UUID[] drivers = new UUID[500];
+        Random random = new Random(42);
+        for (int i = 0; i < drivers.length; i++) {
+            drivers[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < drivers.length; i++) {
+                long amount = 1_000 + i + round;
+                earnings.add(drivers[i], amount);
+                expected.merge(drivers[i], new long[]{1, amount},
+                        (sum, one) -> new long[]{sum[0] + one[0], sum[1] + one[1]});
+            }
+        }
+
+        Map<UUID, long[]> totals = collect(earnings);
+        assertThat(earnings.size()).isEqualTo(drivers.length);
+        assertThat(totals).hasSameSizeAs(expected);
+        expected.forEach((driverId, sum) -> assertThat(totals.get(driverId)).containsExactly(sum));
+    }
+
+    @Test
+    void emptyTableVisitsNothing() {
+        DriverEarnings earnings = new DriverEarnings(1024);
+
+        assertThat(earnings.size()).isZero();
+        assertThat(collect(earnings)).isEmpty();
+    }
+}
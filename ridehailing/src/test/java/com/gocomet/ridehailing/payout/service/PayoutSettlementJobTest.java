@@ -0,0 +1,141 @@
+package com.gocomet.ridehailing.payout.service;
+
+import com.gocomet.ridehailing.payout.model.PayoutRun;
+import com.gocomet.ridehailing.payout.model.PayoutRunStatus;
+import com.gocomet.ridehailing.payout.repository.PayoutRunRepository;
+import com.gocomet.ridehailing.payout.repository.SettlementJdbcRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PayoutSettlementJobTest {
+
+    private PayoutRunRepository payoutRunRepository;
+    private SettlementJdbcRepository settlementJdbcRepository;
+    private PayoutSettlementJob job;
+    private PayoutRun run;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        payoutRunRepository = mock(PayoutRunRepository.class);
+        settlementJdbcRepository = mock(SettlementJdbcRepository.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+
+        job = new PayoutSettlementJob(payoutRunRepository, settlementJdbcRepository, transactionTemplate);
+        ReflectionTestUtils.setField(job, "periodHours", 24);
+        ReflectionTestUtils.setField(job, "lookbackHours", 168L);
+        ReflectionTestUtils.setField(job, "chunkSize", 10);
+        ReflectionTestUtils.setField(job, "fetchSize", 10);
+        ReflectionTestUtils.setField(job, "commissionRate", new BigDecimal("0.20"));
+
+        LocalDateTime periodEnd = LocalDateTime.now().withNano(0);
+        run = PayoutRun.builder()
+                .id(7L)
+                .windowStart(periodEnd.minusHours(168))
+                .periodEnd(periodEnd)
+                .build();
+        when(payoutRunRepository.existsByPeriodEnd(any())).thenReturn(true);
+        when(payoutRunRepository.findByStatusOrderByPeriodEnd(PayoutRunStatus.RUNNING)).thenReturn(List.of(run));
+        when(payoutRunRepository.lockRunning(7L)).thenReturn(Optional.of(run));
+    }
+
+    private void streamRows(Object[]... rows) {
+        doAnswer(invocation -> {
+            SettlementJdbcRepository.TripRow callback = invocation.getArgument(5);
+            for (Object[] row : rows) {
+                callback.accept((UUID) row[0], (UUID) row[1], (LocalDateTime) row[2], (Long) row[3]);
+            }
+            return null;
+        }).when(settlementJdbcRepository).streamSettleable(any(), any(), any(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void tripWithTwoSuccessfulPaymentsIsCreditedOnce() {
+        UUID driverId = UUID.randomUUID();
+        UUID tripA = UUID.randomUUID();
+        UUID tripB = UUID.randomUUID();
+        LocalDateTime endA = run.getPeriodEnd().minusHours(2);
+        LocalDateTime endB = run.getPeriodEnd().minusHours(1);
+        // The payments join yields trip A once per SUCCESS payment, back to back
+        streamRows(
+                new Object[]{tripA, driverId, endA, 10_000L},
+                new Object[]{tripA, driverId, endA, 10_000L},
+                new Object[]{tripB, driverId, endB, 5_000L});
+        when(settlementJdbcRepository.markSettled(anyLong(), any()))
+                .thenAnswer(invocation -> invocation.<UUID[]>getArgument(1).length);
+
+        job.settle();
+
+        ArgumentCaptor<UUID[]> settled = ArgumentCaptor.forClass(UUID[].class);
+        verify(settlementJdbcRepository).markSettled(anyLong(), settled.capture());
+        assertThat(settled.getValue()).containsExactly(tripA, tripB);
+
+        ArgumentCaptor<List<Object[]>> payouts = ArgumentCaptor.forClass(List.class);
+        verify(settlementJdbcRepository).upsertPayouts(payouts.capture());
+        assertThat(payouts.getValue()).hasSize(1);
+        Object[] payout = payouts.getValue().get(0);
+        assertThat(payout[1]).isEqualTo(driverId);
+        assertThat(payout[2]).isEqualTo(2);
+        assertThat((BigDecimal) payout[3]).isEqualByComparingTo("150.00");
+        assertThat((BigDecimal) payout[4]).isEqualByComparingTo("30.00");
+        assertThat((BigDecimal) payout[5]).isEqualByComparingTo("120.00");
+
+        assertThat(run.getTripsSettled()).isEqualTo(2L);
+        assertThat(run.getGrossPaise()).isEqualTo(15_000L);
+        assertThat(run.getNetPaise()).isEqualTo(12_000L);
+        assertThat(run.getCheckpointTripId()).isEqualTo(tripB);
+        assertThat(run.getCheckpointEndTime()).isEqualTo(endB);
+        assertThat(run.getStatus()).isEqualTo(PayoutRunStatus.COMPLETED);
+    }
+
+    @Test
+    void chunkWithConcurrentlySettledTripIsNotCounted() {
+        UUID driverId = UUID.randomUUID();
+        streamRows(
+                new Object[]{UUID.randomUUID(), driverId, run.getPeriodEnd().minusHours(2), 10_000L},
+                new Object[]{UUID.randomUUID(), driverId, run.getPeriodEnd().minusHours(1), 5_000L});
+        when(settlementJdbcRepository.markSettled(anyLong(), any())).thenReturn(1);
+
+        job.settle();
+
+        assertThat(run.getTripsSettled()).isZero();
+        assertThat(run.getCheckpointTripId()).isNull();
+        assertThat(run.getStatus()).isEqualTo(PayoutRunStatus.RUNNING);
+    }
+
+    @Test
+    void emptyChunkCompletesTheRunWithoutWriting() {
+        streamRows();
+
+        job.settle();
+
+        verify(settlementJdbcRepository, never()).upsertPayouts(anyList());
+        verify(settlementJdbcRepository, never()).markSettled(anyLong(), any());
+        assertThat(run.getStatus()).isEqualTo(PayoutRunStatus.COMPLETED);
+        assertThat(run.getCompletedAt()).isNotNull();
+    }
+}
@@ -0,0 +1,120 @@
+package com.gocomet.ridehailing.pricing.service;
+
+import com.gocomet.ridehailing.common.geo.CellId;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DemandForecasterTest {
+
+    private static final double LAT = 12.9716;
+    private static final double LNG = 77.5946;
+    private static final int LEVEL = 15;
+    private static final long CELL = CellId.of(LAT, LNG, LEVEL);
+    private static final long FIRST_MINUTE = 29_000_000L;
+
+    private static DemandForecaster forecaster() {
+        DemandForecaster forecaster = new DemandForecaster();
+        ReflectionTestUtils.setField(forecaster, "cellLevel", LEVEL);
+        ReflectionTestUtils.setField(forecaster, "maxCells", 1000);
+        ReflectionTestUtils.setField(forecaster, "allowedLatenessMinutes", 5);
+        forecaster.partitionsAssigned(List.of(0, 1));
+        return forecaster;
+    }
+
+    // Requests per minute of the synthetic series: a ramp, so the trend matters
+    private static int requestsIn(long minute) {
+        return 2 + (int) (minute - FIRST_MINUTE) / 3;
+    }
+
+    private static void observeMinute(DemandForecaster forecaster, long minute, int count, int partition) {
+        for (int i = 0; i < count; i++) {
+            forecaster.observe(LAT, LNG, minute * 60_000L + i, partition);
+        }
+    }
+
+    private static double[] forecasts(DemandForecaster forecaster) {
+        double[] rates = new double[DemandForecaster.HORIZONS_MINUTES.length];
+        for (int h = 0; h < rates.length; h++) {
+            rates[h] = forecaster.forecastPerMinute(CELL, DemandForecaster.HORIZONS_MINUTES[h]);
+        }
+        return rates;
+    }
+
+    @Test
+    void partitionBatchedReplayMatchesEventTimeOrder() {
+        // Reference: every minute in order, split across both partitions
+        DemandForecaster ordered = forecaster();
+        for (long minute = FIRST_MINUTE; minute < FIRST_MINUTE + 60; minute++) {
+            observeMinute(ordered, minute, requestsIn(minute), (int) (minute % 2));
+        }
+        ordered.sweep();
+
+        // Replay: each partition's batch covers three minutes before the other's catches up
+        DemandForecaster replayed = forecaster();
+        for (long batch = FIRST_MINUTE; batch < FIRST_MINUTE + 60; batch += 6) {
+            for (int partition = 0; partition < 2; partition++) {
+                for (long minute = batch; minute < batch + 6; minute++) {
+                    if (minute % 2 == partition) {
+                        observeMinute(replayed, minute, requestsIn(minute), partition);
+                    }
+                }
+            }
+        }
+        replayed.sweep();
+
+        assertThat(forecasts(replayed)).containsExactly(forecasts(ordered));
+        assertThat(replayed.scoredMinutes()).containsExactly(ordered.scoredMinutes());
+        assertThat(replayed.wape()).containsExactly(ordered.wape());
+    }
+
+    @Test
+    void eventsBeyondTheAllowedLatenessAreDroppedNotAddedToALaterMinute() {
+        DemandForecaster clean = forecaster();
+        DemandForecaster withStragglers = forecaster();
+        for (long minute = FIRST_MINUTE; minute < FIRST_MINUTE + 30; minute++) {
+            observeMinute(clean, minute, 4, 0);
+            observeMinute(withStragglers, minute, 4, 0);
+        }
+
+        // A burst from twenty minutes ago arrives late on the other partition
+        observeMinute(withStragglers, FIRST_MINUTE + 10, 200, 1);
+        for (long minute = FIRST_MINUTE + 30; minute < FIRST_MINUTE + 40; minute++) {
+            observeMinute(clean, minute, 4, 0);
+            observeMinute(withStragglers, minute, 4, 0);
+        }
+        clean.sweep();
+        withStragglers.sweep();
+
+        assertThat(forecasts(withStragglers)).containsExactly(forecasts(clean));
+    }
+
+    @Test
+    void lateEventsWithinTheLatenessWindowCountInTheirOwnMinute() {
+        DemandForecaster reference = forecaster();
+        for (long minute = FIRST_MINUTE; minute < FIRST_MINUTE + 30; minute++) {
+            observeMinute(reference, minute, requestsIn(minute), 0);
+        }
+        reference.sweep();
+
+        // Partition 1 stays silent, so minutes close allowed-lateness behind partition 0;
+        // the events of minute 17 arrive after minute 19's — still in time
+        DemandForecaster forecaster = forecaster();
+        for (long minute = FIRST_MINUTE; minute < FIRST_MINUTE + 20; minute++) {
+            if (minute != FIRST_MINUTE + 17) {
+                observeMinute(forecaster, minute, requestsIn(minute), 0);
+            }
+        }
+        observeMinute(forecaster, FIRST_MINUTE + 17, requestsIn(FIRST_MINUTE + 17), 0);
+        for (long minute = FIRST_MINUTE + 20; minute < FIRST_MINUTE + 30; minute++) {
+            observeMinute(forecaster, minute, requestsIn(minute), 0);
+        }
+        forecaster.sweep();
+
+        assertThat(forecasts(forecaster)).containsExactly(forecasts(reference));
+        assertThat(forecaster.scoredMinutes()).containsExactly(reference.scoredMinutes());
+    }
+}
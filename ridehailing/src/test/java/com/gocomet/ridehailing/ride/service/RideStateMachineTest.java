@@ -0,0 +1,298 @@
+package com.gocomet.ridehailing.ride.service;
+
+import com.gocomet.ridehailing.common.exception.InvalidStateTransitionException;
+import com.gocomet.ridehailing.driver.model.Driver;
+import com.gocomet.ridehailing.ride.model.Ride;
+import com.gocomet.ridehailing.ride.model.RideStatus;
+import com.gocomet.ridehailing.ride.model.RideTransition;
+import com.gocomet.ridehailing.ride.repository.RideRepository;
+import com.gocomet.ridehailing.ride.repository.RideTransitionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RideStateMachineTest {
+
+    private RideRepository rideRepository;
+    private RideTransitionRepository transitionRepository;
+    private RideStateMachine stateMachine;
+
+    @BeforeEach
+    void setUp() {
+        rideRepository = mock(RideRepository.class);
+        transitionRepository = mock(RideTransitionRepository.class);
+        stateMachine = new RideStateMachine(rideRepository, transitionRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static Ride ride(RideStatus status, int stateSeq, UUID driverId) {
+        return Ride.builder()
+                .id(UUID.randomUUID())
+                .status(status)
+                .stateSeq(stateSeq)
+                .assignedDriver(driverId != null ? Driver.builder().id(driverId).build() : null)
+                .build();
+    }
+
+    private static RideTransition logged(Ride ride, int seq, RideStatus from, RideStatus to, UUID driverId) {
+        return RideTransition.builder()
+                .rideId(ride.getId())
+                .seq(seq)
+                .fromStatus(from)
+                .toStatus(to)
+                .driverId(driverId)
+                .build();
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(sync -> sync.afterCompletion(status));
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void illegalTransitionThrowsAndAppendsNothing() {
+        Ride ride = ride(RideStatus.REQUESTED, 0, null);
+        stateMachine.register(ride);
+
+        assertThatThrownBy(() -> stateMachine.transition(ride, RideStatus.ACCEPTED, UUID.randomUUID()))
+                .isInstanceOf(InvalidStateTransitionException.class)
+                .hasMessageContaining("REQUESTED")
+                .hasMessageContaining("ACCEPTED");
+
+        verify(transitionRepository, never()).save(any());
+        assertThat(stateMachine.current(ride).status()).isEqualTo(RideStatus.REQUESTED);
+        assertThat(stateMachine.current(ride).seq()).isZero();
+    }
+
+    @Test
+    void acceptedOnlyMovesToCompleted() {
+        UUID driverId = UUID.randomUUID();
+        Ride ride = ride(RideStatus.ACCEPTED, 3, driverId);
+
+        assertThatThrownBy(() -> stateMachine.transition(ride, RideStatus.CANCELLED, null))
+                .isInstanceOf(InvalidStateTransitionException.class);
+        assertThatThrownBy(() -> stateMachine.transition(ride, RideStatus.MATCHING, null))
+                .isInstanceOf(InvalidStateTransitionException.class);
+        verify(transitionRepository, never()).save(any());
+    }
+
+    @Test
+    void terminalRideAcceptsNoTransitions() {
+        Ride ride = ride(RideStatus.CANCELLED, 1, null);
+
+        assertThatThrownBy(() -> stateMachine.transition(ride, RideStatus.MATCHING, null))
+                .isInstanceOf(InvalidStateTransitionException.class);
+        verify(transitionRepository, never()).findByRideIdAndSeqGreaterThanOrderBySeq(any(), anyInt());
+        assertThat(stateMachine.size()).isZero();
+    }
+
+    @Test
+    void transitionsAppendToTheLogAndSnapshotOnAccept() {
+        UUID driverId = UUID.randomUUID();
+        Ride ride = ride(RideStatus.REQUESTED, 0, null);
+        stateMachine.register(ride);
+
+        stateMachine.transition(ride, RideStatus.MATCHING, null);
+        stateMachine.transition(ride, RideStatus.MATCHED, driverId);
+        RideStateMachine.State accepted = stateMachine.transition(ride, RideStatus.ACCEPTED, null);
+
+        assertThat(accepted.seq()).isEqualTo(3);
+        assertThat(accepted.driverId()).isEqualTo(driverId);
+
+        ArgumentCaptor<RideTransition> appended = ArgumentCaptor.forClass(RideTransition.class);
+        verify(transitionRepository, times(3)).save(appended.capture());
+        assertThat(appended.getAllValues()).extracting(RideTransition::getSeq).containsExactly(1, 2, 3);
+        assertThat(appended.getAllValues()).extracting(RideTransition::getToStatus)
+                .containsExactly(RideStatus.MATCHING, RideStatus.MATCHED, RideStatus.ACCEPTED);
+
+        // Only ACCEPTED touches the rides row before the terminal snapshot
+        verify(rideRepository).writeSnapshot(ride.getId(), "ACCEPTED", driverId, 3);
+        verify(rideRepository, never()).writeSnapshot(any(), anyString(), anyInt());
+    }
+
+    @Test
+    void declineClearsTheOfferedDriver() {
+        Ride ride = ride(RideStatus.REQUESTED, 0, null);
+        stateMachine.register(ride);
+        stateMachine.transition(ride, RideStatus.MATCHING, null);
+        stateMachine.transition(ride, RideStatus.MATCHED, UUID.randomUUID());
+
+        RideStateMachine.State rematching = stateMachine.transition(ride, RideStatus.MATCHING, null);
+
+        assertThat(rematching.driverId()).isNull();
+        assertThat(rematching.seq()).isEqualTo(3);
+    }
+
+    @Test
+    void terminalTransitionWritesSnapshotAndEvicts() {
+        Ride ride = ride(RideStatus.REQUESTED, 0, null);
+        stateMachine.register(ride);
+
+        RideStateMachine.State cancelled = stateMachine.transition(ride, RideStatus.CANCELLED, null);
+
+        assertThat(cancelled.seq()).isEqualTo(1);
+        verify(rideRepository).writeSnapshot(ride.getId(), "CANCELLED", 1);
+        assertThat(stateMachine.size()).isZero();
+    }
+
+    @Test
+    void terminalStateLeavesTheCacheOnlyAfterCommit() {
+        UUID driverId = UUID.randomUUID();
+        Ride ride = ride(RideStatus.ACCEPTED, 3, driverId);
+        stateMachine.current(ride);
+
+        TransactionSynchronizationManager.initSynchronization();
+        stateMachine.transition(ride, RideStatus.COMPLETED, null);
+
+        verify(rideRepository).writeSnapshot(ride.getId(), "COMPLETED", driverId, 4);
+        assertThat(stateMachine.size()).isEqualTo(1);
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(stateMachine.size()).isZero();
+    }
+
+    @Test
+    void recoversByFoldingTransitionsAfterStateSeq() {
+        UUID driverId = UUID.randomUUID();
+        Ride ride = ride(RideStatus.REQUESTED, 0, null);
+        when(transitionRepository.findByRideIdAndSeqGreaterThanOrderBySeq(ride.getId(), 0)).thenReturn(List.of(
+                logged(ride, 1, RideStatus.REQUESTED, RideStatus.MATCHING, null),
+                logged(ride, 2, RideStatus.MATCHING, RideStatus.MATCHED, driverId)));
+
+        RideStateMachine.State state = stateMachine.current(ride);
+
+        assertThat(state.status()).isEqualTo(RideStatus.MATCHED);
+        assertThat(state.seq()).isEqualTo(2);
+        assertThat(state.driverId()).isEqualTo(driverId);
+
+        stateMachine.transition(ride, RideStatus.ACCEPTED, null);
+
+        ArgumentCaptor<RideTransition> appended = ArgumentCaptor.forClass(RideTransition.class);
+        verify(transitionRepository).save(appended.capture());
+        assertThat(appended.getValue().getSeq()).isEqualTo(3);
+        assertThat(appended.getValue().getFromStatus()).isEqualTo(RideStatus.MATCHED);
+        assertThat(appended.getValue().getDriverId()).isEqualTo(driverId);
+    }
+
+    @Test
+    void recoversFromTheAcceptedSnapshot() {
+        UUID driverId = UUID.randomUUID();
+        Ride ride = ride(RideStatus.ACCEPTED, 3, driverId);
+
+        RideStateMachine.State state = stateMachine.current(ride);
+
+        assertThat(state.status()).isEqualTo(RideStatus.ACCEPTED);
+        assertThat(state.seq()).isEqualTo(3);
+        assertThat(state.driverId()).isEqualTo(driverId);
+        verify(transitionRepository).findByRideIdAndSeqGreaterThanOrderBySeq(ride.getId(), 3);
+    }
+
+    @Test
+    void terminalSnapshotIsNotCached() {
+        Ride ride = ride(RideStatus.COMPLETED, 4, UUID.randomUUID());
+        when(rideRepository.findById(ride.getId())).thenReturn(Optional.of(ride));
+
+        RideStateMachine.State state = stateMachine.current(ride.getId());
+
+        assertThat(state.status()).isEqualTo(RideStatus.COMPLETED);
+        assertThat(stateMachine.size()).isZero();
+        verify(transitionRepository, never()).findByRideIdAndSeqGreaterThanOrderBySeq(any(), anyInt());
+    }
+
+    @Test
+    void rollbackDropsTheCachedStateAndRecoversFromTheLog() {
+        Ride ride = ride(RideStatus.REQUESTED, 0, null);
+        stateMachine.register(ride);
+
+        TransactionSynchronizationManager.initSynchronization();
+        RideStateMachine.State matching = stateMachine.transition(ride, RideStatus.MATCHING, null);
+        assertThat(matching.seq()).isEqualTo(1);
+        assertThat(stateMachine.current(ride).status()).isEqualTo(RideStatus.MATCHING);
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(stateMachine.size()).isZero();
+        RideStateMachine.State recovered = stateMachine.current(ride);
+        assertThat(recovered.status()).isEqualTo(RideStatus.REQUESTED);
+        assertThat(recovered.seq()).isZero();
+        verify(transitionRepository).findByRideIdAndSeqGreaterThanOrderBySeq(ride.getId(), 0);
+    }
+
+    @Test
+    void rolledBackRegistrationIsForgotten() {
+        Ride ride = ride(RideStatus.REQUESTED, 0, null);
+
+        TransactionSynchronizationManager.initSynchronization();
+        stateMachine.register(ride);
+        assertThat(stateMachine.size()).isEqualTo(1);
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(stateMachine.size()).isZero();
+    }
+
+    @Test
+    void snapshotNewerThanTheCacheWins() {
+        UUID offeredDriver = UUID.randomUUID();
+        Ride ride = ride(RideStatus.REQUESTED, 0, null);
+        stateMachine.register(ride);
+        stateMachine.transition(ride, RideStatus.MATCHING, null);
+        stateMachine.transition(ride, RideStatus.MATCHED, offeredDriver);
+
+        // Accepted on another instance: the row carries the ACCEPTED snapshot at seq 3,
+        // while this instance still caches MATCHED at seq 2
+        UUID acceptedDriver = UUID.randomUUID();
+        RideStateMachine.State state = stateMachine.current(ride.getId(), RideStatus.ACCEPTED, acceptedDriver, 3);
+
+        assertThat(state.status()).isEqualTo(RideStatus.ACCEPTED);
+        assertThat(state.driverId()).isEqualTo(acceptedDriver);
+        assertThat(state.seq()).isEqualTo(3);
+        verify(transitionRepository).findByRideIdAndSeqGreaterThanOrderBySeq(ride.getId(), 3);
+
+        // The refreshed entry is cached; a second read needs no log fold
+        assertThat(stateMachine.current(ride.getId(), RideStatus.ACCEPTED, acceptedDriver, 3)).isEqualTo(state);
+        verify(transitionRepository, times(1)).findByRideIdAndSeqGreaterThanOrderBySeq(any(), anyInt());
+    }
+
+    @Test
+    void cacheAtLeastAsNewAsTheSnapshotIsTrusted() {
+        Ride ride = ride(RideStatus.REQUESTED, 0, null);
+        stateMachine.register(ride);
+        stateMachine.transition(ride, RideStatus.MATCHING, null);
+
+        RideStateMachine.State state = stateMachine.current(ride.getId(), RideStatus.REQUESTED, null, 0);
+
+        assertThat(state.status()).isEqualTo(RideStatus.MATCHING);
+        assertThat(state.seq()).isEqualTo(1);
+        verify(transitionRepository, never()).findByRideIdAndSeqGreaterThanOrderBySeq(any(), anyInt());
+    }
+}